@@ -3,10 +3,12 @@ package tsuro.admin;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import tsuro.*;
+import tsuro.parser.BinaryParser;
 import tsuro.parser.Parser;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 // Localhost IP: "127.0.0.1"
@@ -14,20 +16,38 @@ import java.util.List;
 // Jin IP: "10.105.16.16"
 // Jennifer IP: "10.105.35.58"
 public class Admin {
-    private static DocumentBuilder db;
-    private static AdminSocket socket;
-    private static Parser parser;
-    private static APlayer player;
+    private DocumentBuilder db;
+    private AdminSocket socket;
+    private Parser parser;
+    private APlayer player;
+    // print every completed call to console
+    public boolean verbose = true;
+    // offer the binary protocol of BinaryParser when asked for the name; the server may keep to XML
+    public boolean binary = false;
+    // with binary, offer BinaryParser.DELTA_PROTOCOL instead, sending only the changes of the board
+    public boolean delta = false;
+    // the board patched by the changes of the delta protocol
+    private Board board = new Board();
+
+    /**
+     * @param socket connection to the server
+     * @param player the player answering the calls of the server
+     */
+    public Admin(AdminSocket socket, APlayer player) throws Exception {
+        this.db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        this.parser = new Parser(db);
+        this.socket = socket;
+        this.player = player;
+    }
 
     // CML arguments:
     // 0: Port_Number,
     // 1: Player_Name,
     // 2: Player_Type (H/M),
     // 3: Strategy (R/MS/LS) if Player_Type is M"
+    // last: "binary" to offer the binary protocol, or "binary-delta" for its changes of the board only (optional)
     public static void main(String[] args) throws Exception {
-        db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        parser = new Parser(db);
-        socket = new AdminSocket("localhost", Integer.parseInt(args[0]));
+        APlayer player;
         if (args[2].equals("M")) {
             switch (args[3]) {
                 case "R":
@@ -45,8 +65,21 @@ public class Admin {
         } else {
             player = new HPlayer(args[1]);
         }
+        Admin admin = new Admin(new AdminSocket("localhost", Integer.parseInt(args[0])), player);
+        admin.delta = args[args.length - 1].equals(BinaryParser.DELTA_PROTOCOL);
+        admin.binary = admin.delta || args[args.length - 1].equals(BinaryParser.PROTOCOL);
+        admin.run();
+    }
 
+    /**
+     * Answer the calls of the server until it closes the connection
+     */
+    public void run() throws Exception {
         while (socket.connectionEstablished()) {
+            if (binary && socket.nextIsFrame()) {
+                processFrame(socket.readFrame());
+                continue;
+            }
             String res = socket.readInputFromServer();
             // server has closed the connection
             if (res == null) break;
@@ -72,15 +105,17 @@ public class Admin {
                     throw new IllegalArgumentException("Admin: Invalid method call over network");
             }
         }
+        socket.closeConnection();
     }
 
-    private static void processGetName() throws Exception {
+    private void processGetName() throws Exception {
         String playerName = player.getName();
-        Document getNameResXML = parser.buildPlayerNameXML(playerName);
+        Document getNameResXML = !binary ? parser.buildPlayerNameXML(playerName)
+                : parser.buildPlayerNameXML(playerName, delta ? BinaryParser.DELTA_PROTOCOL : BinaryParser.PROTOCOL);
         sendXMLToClient(getNameResXML, "Admin: get-name complete");
     }
 
-    private static void processInitialize(Node node) throws Exception {
+    private void processInitialize(Node node) throws Exception {
         Node colorNode = node.getFirstChild();
         int color = Token.getColorInt(colorNode.getTextContent());
 
@@ -93,7 +128,7 @@ public class Admin {
         sendXMLToClient(voidXML, "Admin: initialize complete ");
     }
 
-    private static void processPlacePawn(Node node) throws Exception {
+    private void processPlacePawn(Node node) throws Exception {
         Board board = parser.boardParser.fromNode(node.getFirstChild());
 
         Token token = player.placePawn(board);
@@ -101,7 +136,7 @@ public class Admin {
         sendXMLToClient(pawnLocXML, "Admin: place-pawn complete");
     }
 
-    private static void processPlayTurn(Node node) throws Exception {
+    private void processPlayTurn(Node node) throws Exception {
         Node boardNode = node.getFirstChild();
         Board board = parser.boardParser.fromNode(boardNode);
 
@@ -117,7 +152,7 @@ public class Admin {
         sendXMLToClient(tileXML, "Admin: play-turn complete");
     }
 
-    private static void processEndGame(Node node) throws Exception {
+    private void processEndGame(Node node) throws Exception {
         Node boardNode = node.getFirstChild();
         Board board = parser.boardParser.fromNode(boardNode);
 
@@ -130,9 +165,76 @@ public class Admin {
         sendXMLToClient(voidXML, "Admin: end-game complete");
     }
 
-    private static void sendXMLToClient(Document doc, String printMessage) throws Exception {
+    private void processFrame(byte[] message) throws Exception {
+        switch (BinaryParser.typeOf(message)) {
+            case BinaryParser.INITIALIZE: {
+                ByteBuffer in = BinaryParser.read(message, BinaryParser.INITIALIZE);
+                int color = in.get();
+                player.initialize(color, BinaryParser.readColors(in));
+                sendFrameToClient(BinaryParser.buildVoid(), "Admin: initialize complete");
+                break;
+            }
+            case BinaryParser.PLACE_PAWN: {
+                Board board = BinaryParser.readBoard(BinaryParser.read(message, BinaryParser.PLACE_PAWN));
+                Token token = player.placePawn(board);
+                sendFrameToClient(BinaryParser.buildPawnLoc(token), "Admin: place-pawn complete");
+                break;
+            }
+            case BinaryParser.PLAY_TURN: {
+                ByteBuffer in = BinaryParser.read(message, BinaryParser.PLAY_TURN);
+                Board board = BinaryParser.readBoard(in);
+                List<Tile> hand = BinaryParser.readTiles(in);
+                int tilesLeft = in.get() & 0xFF;
+                Tile tile = player.playTurn(board, hand, tilesLeft);
+                sendFrameToClient(BinaryParser.buildTile(tile), "Admin: play-turn complete");
+                break;
+            }
+            case BinaryParser.END_GAME: {
+                ByteBuffer in = BinaryParser.read(message, BinaryParser.END_GAME);
+                Board board = BinaryParser.readBoard(in);
+                player.endGame(board, BinaryParser.readColors(in));
+                sendFrameToClient(BinaryParser.buildVoid(), "Admin: end-game complete");
+                break;
+            }
+            case BinaryParser.PLACE_PAWN_DELTA: {
+                board = BinaryParser.readBoardDelta(BinaryParser.read(message, BinaryParser.PLACE_PAWN_DELTA), board);
+                Token token = player.placePawn(board);
+                sendFrameToClient(BinaryParser.buildPawnLoc(token), "Admin: place-pawn complete");
+                break;
+            }
+            case BinaryParser.PLAY_TURN_DELTA: {
+                ByteBuffer in = BinaryParser.read(message, BinaryParser.PLAY_TURN_DELTA);
+                board = BinaryParser.readBoardDelta(in, board);
+                List<Tile> hand = BinaryParser.readTiles(in);
+                int tilesLeft = in.get() & 0xFF;
+                Tile tile = player.playTurn(board, hand, tilesLeft);
+                sendFrameToClient(BinaryParser.buildTile(tile), "Admin: play-turn complete");
+                break;
+            }
+            case BinaryParser.END_GAME_DELTA: {
+                ByteBuffer in = BinaryParser.read(message, BinaryParser.END_GAME_DELTA);
+                board = BinaryParser.readBoardDelta(in, board);
+                player.endGame(board, BinaryParser.readColors(in));
+                sendFrameToClient(BinaryParser.buildVoid(), "Admin: end-game complete");
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Admin: Invalid method call over network");
+        }
+    }
+
+    private void sendFrameToClient(byte[] message, String printMessage) throws Exception {
+        if (verbose) {
+            System.out.println(printMessage + " (" + message.length + " bytes)");
+        }
+        socket.writeFrame(message);
+    }
+
+    private void sendXMLToClient(Document doc, String printMessage) throws Exception {
         String s = parser.documentToString(doc);
-        System.out.println(printMessage + s);
+        if (verbose) {
+            System.out.println(printMessage + s);
+        }
         socket.writeOutputToServer(s);
     }
 }
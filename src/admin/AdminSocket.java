@@ -1,29 +1,82 @@
 package tsuro.admin;
 
-import javax.xml.parsers.DocumentBuilder;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import tsuro.parser.BinaryParser;
+
+import java.io.*;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 
 public class AdminSocket {
     private Socket socket;
-    private BufferedReader in;
-    private PrintWriter out;
+    private DataInputStream in;
+    private DataOutputStream out;
 
     public AdminSocket(String hostName, int postNum) throws IOException {
         this.socket = new Socket(InetAddress.getByName(hostName), postNum);
-        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        this.out = new PrintWriter(socket.getOutputStream(), true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
     }
 
     public boolean connectionEstablished() { return socket.isConnected(); }
 
-    public String readInputFromServer() throws IOException { return in.readLine(); }
+    /**
+     * Read a line of XML
+     * @return the line without the line break; null if the server has closed the connection
+     */
+    public String readInputFromServer() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                return line.size() == 0 ? null : line.toString(StandardCharsets.UTF_8);
+            }
+            line.write(b);
+        }
+        String s = line.toString(StandardCharsets.UTF_8);
+        return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
+    }
 
-    public void writeOutputToServer(String output) { out.println(output); }
+    public void writeOutputToServer(String output) {
+        try {
+            out.write((output + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            // as with a PrintWriter, a failed write shows as the server closing the connection on the next read
+        }
+    }
+
+    /**
+     * Check whether the next message of the server is a frame of BinaryParser rather than a line of XML,
+     * without consuming it
+     */
+    public boolean nextIsFrame() throws IOException {
+        in.mark(1);
+        int b = in.read();
+        in.reset();
+        // a line of XML starts with '<', a frame with the high byte of its length
+        return b == 0;
+    }
+
+    /**
+     * Read a frame of BinaryParser
+     * @return the payload of the frame
+     */
+    public byte[] readFrame() throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > BinaryParser.MAX_FRAME) {
+            throw new IOException("Frame of " + length + " bytes");
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+
+    public void writeFrame(byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+    }
 
     public void closeConnection() throws IOException { socket.close(); }
 }
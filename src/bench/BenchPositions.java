@@ -0,0 +1,77 @@
+package tsuro;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reproducible game positions for the benchmarks: a server part way through a game between
+ * a given number of players, with a given number of tiles on board
+ *
+ * Players start on the positions of Perft.startingPawn() and every turn places a random legal tile,
+ * both drawn from a Random seeded with the position's seed; seeds whose game ends too early are skipped.
+ */
+final class BenchPositions {
+
+    private static final int MAX_SEEDS = 10000;
+
+    private BenchPositions() {
+    }
+
+    /**
+     * Play a game until the board has a number of tiles
+     * @param numPlayers number of players, 2 to 8
+     * @param fill number of tiles on board
+     * @param seed first seed to try
+     * @return a server with at least two players left and the board filled
+     */
+    static Server midGame(int numPlayers, int fill, long seed) {
+        for (long s = seed; s < seed + MAX_SEEDS; s++) {
+            Server server = play(numPlayers, fill, new Random(s));
+            if (server != null) {
+                return server;
+            }
+        }
+        throw new IllegalStateException("No game with " + numPlayers + " players reaches " + fill + " tiles");
+    }
+
+    private static Server play(int numPlayers, int fill, Random random) {
+        Deck deck = new Deck(random);
+        Board board = new Board();
+        List<SPlayer> inSPlayers = new ArrayList<>();
+        List<Integer> colors = new ArrayList<>();
+        for (int color = 0; color < numPlayers; color++) {
+            List<Tile> hand = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                hand.add(deck.pop());
+            }
+            SPlayer sp = new SPlayer(Token.fromPacked(color, Perft.startingPawn(color, numPlayers)), hand);
+            board.addSPlayer(sp);
+            inSPlayers.add(sp);
+            colors.add(color);
+        }
+        Server server = new Server();
+        server.setState(board, inSPlayers, new ArrayList<>(), new ArrayList<>(), colors, deck);
+
+        LegalMoves legalMoves = new LegalMoves();
+        try {
+            while (board.getTileCount() < fill) {
+                if (server.isGameOver() || server.inSPlayers.size() < 2) {
+                    return null;
+                }
+                SPlayer current = server.inSPlayers.get(0);
+                if (current.getHand().isEmpty()) {
+                    return null;
+                }
+                List<Tile> legal = legalMoves.generate(board, current.getToken().pack(), current.getHand())
+                        .getLegalTiles();
+                Tile t = legal.get(random.nextInt(legal.size()));
+                current.deal(t);
+                server.playATurn(t);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return server.isGameOver() || server.inSPlayers.size() < 2 ? null : server;
+    }
+}
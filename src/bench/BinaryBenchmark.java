@@ -0,0 +1,137 @@
+package tsuro;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import tsuro.parser.BinaryParser;
+import tsuro.parser.BoardDelta;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of encoding messages of the binary protocol and decoding them back, the counterpart of
+ * XmlBenchmark on the same positions
+ *
+ * Encoding builds the message the way RemotePlayer does; decoding reads the game objects out of it the
+ * way Admin does. The delta benchmarks send the position from the one a tile earlier, as acknowledged by
+ * the client, and patch the board of the client. Run with `make bench BENCH=BinaryBenchmark`.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BinaryBenchmark {
+
+    @Param({"0", "17", "34"})
+    public int fill;
+
+    private Server server;
+    private SPlayer current;
+    private Set<Tile> hand;
+    private List<Integer> winners;
+
+    private byte[] placePawn;
+    private byte[] playTurn;
+    private byte[] tile;
+    private byte[] endGame;
+    private BoardDelta delta;
+    private byte[] playTurnDelta;
+    private Board client;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = BenchPositions.midGame(4, fill, 1);
+        current = server.inSPlayers.get(0);
+        hand = new HashSet<>(current.getHand());
+        winners = new ArrayList<>();
+        for (SPlayer sp : server.inSPlayers) {
+            winners.add(sp.getToken().getColor());
+        }
+
+        placePawn = BinaryParser.buildPlacePawn(server.board);
+        playTurn = BinaryParser.buildPlayTurn(server.board, hand, server.drawPile.size());
+        tile = BinaryParser.buildTile(current.getHand().get(0));
+        endGame = BinaryParser.buildEndGame(server.board, new HashSet<>(winners));
+
+        Server previous = BenchPositions.midGame(4, Math.max(fill - 1, 0), 1);
+        delta = new BoardDelta();
+        client = BinaryParser.readBoardDelta(BinaryParser.read(BinaryParser.buildPlacePawn(previous.board, delta),
+                BinaryParser.PLACE_PAWN_DELTA), new Board());
+        delta.acknowledge();
+        playTurnDelta = BinaryParser.buildPlayTurn(server.board, hand, server.drawPile.size(), delta);
+    }
+
+    @Benchmark
+    public byte[] placePawnEncode() {
+        return BinaryParser.buildPlacePawn(server.board);
+    }
+
+    @Benchmark
+    public Board placePawnDecode() {
+        return BinaryParser.readBoard(BinaryParser.read(placePawn, BinaryParser.PLACE_PAWN));
+    }
+
+    @Benchmark
+    public byte[] playTurnEncode() {
+        return BinaryParser.buildPlayTurn(server.board, hand, server.drawPile.size());
+    }
+
+    @Benchmark
+    public void playTurnDecode(Blackhole bh) {
+        ByteBuffer in = BinaryParser.read(playTurn, BinaryParser.PLAY_TURN);
+        bh.consume(BinaryParser.readBoard(in));
+        bh.consume(BinaryParser.readTiles(in));
+        bh.consume(in.get() & 0xFF);
+    }
+
+    @Benchmark
+    public byte[] playTurnDeltaEncode() {
+        return BinaryParser.buildPlayTurn(server.board, hand, server.drawPile.size(), delta);
+    }
+
+    // includes taking the tiles of the delta off the board again, so that every call patches the same board
+    @Benchmark
+    public void playTurnDeltaDecode(Blackhole bh) {
+        ByteBuffer in = BinaryParser.read(playTurnDelta, BinaryParser.PLAY_TURN_DELTA);
+        bh.consume(BinaryParser.readBoardDelta(in, client));
+        bh.consume(BinaryParser.readTiles(in));
+        bh.consume(in.get() & 0xFF);
+        ByteBuffer undo = BinaryParser.read(playTurnDelta, BinaryParser.PLAY_TURN_DELTA);
+        undo.get();
+        int tiles = undo.get();
+        for (int i = 0; i < tiles; i++) {
+            int location = undo.get();
+            undo.get();
+            client.deleteTile(location / client.SIZE, location % client.SIZE);
+        }
+    }
+
+    // the answer to play-turn
+    @Benchmark
+    public byte[] tileEncode() {
+        return BinaryParser.buildTile(current.getHand().get(0));
+    }
+
+    @Benchmark
+    public Tile tileDecode() {
+        return BinaryParser.fromTile(tile);
+    }
+
+    @Benchmark
+    public byte[] endGameEncode() {
+        return BinaryParser.buildEndGame(server.board, new HashSet<>(winners));
+    }
+
+    @Benchmark
+    public void endGameDecode(Blackhole bh) {
+        ByteBuffer in = BinaryParser.read(endGame, BinaryParser.END_GAME);
+        bh.consume(BinaryParser.readBoard(in));
+        bh.consume(BinaryParser.readColors(in));
+    }
+}
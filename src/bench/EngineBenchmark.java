@@ -0,0 +1,178 @@
+package tsuro;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the hot paths of the game engine on positions from BenchPositions
+ *
+ * Run with `make bench`, which adds the gc profiler to report the bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+    /**
+     * A game position; the benchmarks using it never change its board or hands
+     */
+    @State(Scope.Thread)
+    public static class Position {
+        @Param({"2", "4", "8"})
+        public int players;
+
+        @Param({"0", "12", "24"})
+        public int fill;
+
+        Server server;
+        Board board;
+        SPlayer current;
+        MPlayer mPlayer;
+        // packed token and tile code pairs of every tile in the hands of the players on board
+        int[] packed;
+        int[] codes;
+        Tile[] tiles;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            server = BenchPositions.midGame(players, fill, 1);
+            board = server.board;
+            current = server.inSPlayers.get(0);
+            mPlayer = new MPlayerRandom("bench");
+            mPlayer.initialize(current.getToken().getColor(), server.colors);
+
+            List<Tile> all = new ArrayList<>();
+            List<Integer> tokens = new ArrayList<>();
+            for (SPlayer sp : server.inSPlayers) {
+                for (Tile t : sp.getHand()) {
+                    for (int rotation = 0; rotation < 4; rotation++) {
+                        all.add(new Tile(t.getId(), rotation));
+                        tokens.add(sp.getToken().pack());
+                    }
+                }
+            }
+            packed = new int[all.size()];
+            codes = new int[all.size()];
+            tiles = all.toArray(new Tile[0]);
+            for (int i = 0; i < packed.length; i++) {
+                packed[i] = tokens.get(i);
+                codes[i] = tiles[i].getCode();
+            }
+        }
+
+        int next() {
+            next = next + 1 == packed.length ? 0 : next + 1;
+            return next;
+        }
+    }
+
+    /**
+     * A game position and a legal tile of the player to move; every turn is played on a copy of it
+     */
+    @State(Scope.Thread)
+    public static class Turn {
+        @Param({"2", "4", "8"})
+        public int players;
+
+        @Param({"0", "12", "24"})
+        public int fill;
+
+        Server server;
+        Tile tile;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            server = BenchPositions.midGame(players, fill, 1);
+            SPlayer current = server.inSPlayers.get(0);
+            tile = new LegalMoves().generate(server.board, current.getToken().pack(), current.getHand())
+                    .getLegalTiles().get(0);
+        }
+
+        // the game played on by the next turn
+        Server copy() {
+            Server copy = server.copy();
+            copy.inSPlayers.get(0).deal(tile);
+            return copy;
+        }
+    }
+
+    /**
+     * A draw pile of every tile but the last
+     */
+    @State(Scope.Thread)
+    public static class Pile {
+        List<Tile> tiles = new ArrayList<>();
+        Tile missing = new Tile(34, 0);
+        Deck deck;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            for (int id = 0; id < Tile.NUM_TILES - 1; id++) {
+                tiles.add(new Tile(id, 0));
+            }
+            deck = new Deck(tiles);
+        }
+    }
+
+    @Benchmark
+    public int simulateMove(Position p) {
+        int i = p.next();
+        return p.board.simulateMove(p.packed[i], p.codes[i]);
+    }
+
+    @Benchmark
+    public boolean legalPlay(Position p) {
+        return p.server.legalPlay(p.current, p.board, p.current.getHand().get(p.next() % p.current.getHand().size()));
+    }
+
+    @Benchmark
+    public List<Tile> findLegalMoves(Position p) {
+        return p.mPlayer.findLegalMoves(p.board, p.current.getHand());
+    }
+
+    // includes copying the position, see copyTurn for the cost of the copy alone
+    @Benchmark
+    public List<SPlayer> playATurn(Turn t) throws Exception {
+        return t.copy().playATurn(t.tile);
+    }
+
+    @Benchmark
+    public Server copyTurn(Turn t) {
+        return t.copy();
+    }
+
+    @Benchmark
+    public boolean isSameTile(Position p) {
+        Tile a = p.tiles[p.next()];
+        return a.isSameTile(p.tiles[p.next()]);
+    }
+
+    @Benchmark
+    public Tile rotateTile(Position p) {
+        Tile t = p.tiles[p.next()];
+        t.rotateTile();
+        return t;
+    }
+
+    // includes building the pile from a list
+    @Benchmark
+    @OperationsPerInvocation(Tile.NUM_TILES - 1)
+    public void pop(Pile p, Blackhole bh) {
+        Deck deck = new Deck(p.tiles);
+        while (!deck.isEmpty()) {
+            bh.consume(deck.pop());
+        }
+    }
+
+    @Benchmark
+    public boolean containsTile(Pile p) {
+        return p.deck.containsTile(p.missing);
+    }
+}
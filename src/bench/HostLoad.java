@@ -0,0 +1,111 @@
+package tsuro;
+
+import tsuro.admin.Admin;
+import tsuro.admin.AdminSocket;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test of GameHost: connects many Admin clients in this process and measures the heap and the
+ * platform threads per connected table, then the throughput of the tables
+ *
+ * Every client holds its first initialize call until all the tables the host can play at once have
+ * started, so the memory is measured with every such table blocked on a client. The clients take the
+ * same share of the heap in every mode, so for the same number of tables the difference between modes
+ * is the host's.
+ */
+public class HostLoad {
+
+    // CML arguments:
+    // 0: Mode, "thread" for a thread per table, or "selector:Number_of_Threads"
+    // 1: Number_of_Tables,
+    // 2: Number_of_Players_per_Table
+    public static void main(String[] args) throws Exception {
+        String mode = args[0];
+        int tables = Integer.parseInt(args[1]);
+        int playersPerTable = Integer.parseInt(args[2]);
+
+        GameHost host;
+        int concurrentTables;
+        if (mode.equals("thread")) {
+            host = GameHost.threadPerTable(0, playersPerTable);
+            concurrentTables = tables;
+            mode += GameHost.hasVirtualThreads() ? " (virtual)" : " (platform)";
+        }
+        else {
+            int threads = Integer.parseInt(mode.substring(mode.indexOf(':') + 1));
+            host = new GameHost(0, playersPerTable, Executors.newFixedThreadPool(threads));
+            concurrentTables = Math.min(tables, threads);
+        }
+
+        long heapBefore = usedHeap();
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        CountDownLatch started = new CountDownLatch(concurrentTables);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger initializing = new AtomicInteger();
+        ExecutorService clients = GameHost.newThreadPerTaskExecutor();
+        host.start();
+        List<Future<?>> games = new ArrayList<>();
+        for (int i = 0; i < tables * playersPerTable; i++) {
+            APlayer player = new MPlayerRandom("P" + i) {
+                @Override
+                public void initialize(int color, List<Integer> colors) {
+                    // the first player of a table to initialize holds its table
+                    if (initializing.getAndIncrement() < concurrentTables) {
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    super.initialize(color, colors);
+                }
+            };
+            Admin admin = new Admin(new AdminSocket("localhost", host.getPort()), player);
+            admin.verbose = false;
+            games.add(clients.submit(() -> {
+                admin.run();
+                return null;
+            }));
+        }
+        started.await();
+        long heapPerTable = (usedHeap() - heapBefore) / tables;
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore;
+        // without virtual threads every client blocks a platform thread of its own
+        int clientThreads = GameHost.hasVirtualThreads() ? 0 : tables * playersPerTable;
+        long start = System.nanoTime();
+        release.countDown();
+        for (Future<?> game : games) {
+            game.get(10, TimeUnit.MINUTES);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("HostLoad: mode = " + mode + ", tables = " + tables + ", players per table = "
+                + playersPerTable + ", tables in play at once = " + concurrentTables);
+        System.out.printf("HostLoad: %.1f KB of heap per table including its clients, %d platform threads "
+                + "for the host%n", heapPerTable / 1024.0, threads - clientThreads);
+        System.out.printf("HostLoad: %.1f tables per second, %d errors%n", host.getGamesPlayed() / seconds,
+                host.getErrors());
+        host.getLatencies().print("HostLoad: latency of ");
+        host.close();
+        clients.shutdown();
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
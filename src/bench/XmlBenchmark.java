@@ -0,0 +1,154 @@
+package tsuro;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Node;
+import tsuro.parser.Parser;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of encoding messages of the XML protocol to strings and decoding them back
+ *
+ * Encoding builds the message the way RemotePlayer does and serializes it; decoding parses the string
+ * and reads the game objects out of it the way Admin does. The play-a-turn benchmarks go through the five
+ * lines read and written by PlayATurnAdapter. Positions are 4 player games from BenchPositions with an
+ * empty board, a board half full and a board with 34 tiles, the most a game still running can have.
+ * Run with `make bench BENCH=XmlBenchmark`; the gc profiler reports the bytes allocated per message.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class XmlBenchmark {
+
+    @Param({"0", "17", "34"})
+    public int fill;
+
+    private DocumentBuilder db;
+    private Parser parser;
+    private Server server;
+    private SPlayer current;
+    private Set<Tile> hand;
+    private List<Integer> winners;
+
+    private String placePawn;
+    private String playTurn;
+    private String tile;
+    private String endGame;
+    private String[] playATurn;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        parser = new Parser(db);
+        server = BenchPositions.midGame(4, fill, 1);
+        current = server.inSPlayers.get(0);
+        hand = new HashSet<>(current.getHand());
+        winners = new ArrayList<>();
+        for (SPlayer sp : server.inSPlayers) {
+            winners.add(sp.getToken().getColor());
+        }
+
+        placePawn = parser.documentToString(parser.buildPlacePawnXML(server.board));
+        playTurn = parser.documentToString(parser.buildPlayTurnXML(server.board, hand, server.drawPile.size()));
+        tile = parser.documentToString(parser.tileParser.buildXML(current.getHand().get(0)));
+        endGame = parser.documentToString(parser.buildEndGameXML(server.board, new HashSet<>(winners)));
+        playATurn = new String[] {
+                parser.documentToString(parser.buildTileListXML(server.drawPile.getPile())),
+                parser.documentToString(parser.buildSPlayerListXML(server, server.inSPlayers)),
+                parser.documentToString(parser.buildSPlayerListXML(server, server.outSPlayers)),
+                parser.documentToString(parser.boardParser.buildXML(server.board)),
+                tile
+        };
+    }
+
+    @Benchmark
+    public String placePawnEncode() throws Exception {
+        return parser.documentToString(parser.buildPlacePawnXML(server.board));
+    }
+
+    @Benchmark
+    public Board placePawnDecode() throws Exception {
+        Node node = parser.stringToDocument(placePawn).getFirstChild();
+        return parser.boardParser.fromNode(node.getFirstChild());
+    }
+
+    @Benchmark
+    public String playTurnEncode() throws Exception {
+        return parser.documentToString(parser.buildPlayTurnXML(server.board, hand, server.drawPile.size()));
+    }
+
+    @Benchmark
+    public void playTurnDecode(Blackhole bh) throws Exception {
+        Node node = parser.stringToDocument(playTurn).getFirstChild();
+        Node boardNode = node.getFirstChild();
+        Board board = parser.boardParser.fromNode(boardNode);
+        Node setNode = boardNode.getNextSibling();
+        List<Tile> tiles = parser.fromTileSetXML(Parser.fromNodeToDoc(setNode, db));
+        int tilesLeft = Integer.parseInt(setNode.getNextSibling().getFirstChild().getTextContent());
+        bh.consume(board);
+        bh.consume(tiles);
+        bh.consume(tilesLeft);
+    }
+
+    // the answer to play-turn
+    @Benchmark
+    public String tileEncode() throws Exception {
+        return parser.documentToString(parser.tileParser.buildXML(current.getHand().get(0)));
+    }
+
+    @Benchmark
+    public Tile tileDecode() throws Exception {
+        return parser.fromPlayTurnXML(parser.stringToDocument(tile));
+    }
+
+    @Benchmark
+    public String endGameEncode() throws Exception {
+        return parser.documentToString(parser.buildEndGameXML(server.board, new HashSet<>(winners)));
+    }
+
+    @Benchmark
+    public void endGameDecode(Blackhole bh) throws Exception {
+        Node node = parser.stringToDocument(endGame).getFirstChild();
+        Node boardNode = node.getFirstChild();
+        Board board = parser.boardParser.fromNode(boardNode);
+        List<Integer> colors = parser.fromColorListSetXML(Parser.fromNodeToDoc(boardNode.getNextSibling(), db));
+        bh.consume(board);
+        bh.consume(colors);
+    }
+
+    @Benchmark
+    public String[] playATurnEncode() throws Exception {
+        return new String[] {
+                parser.documentToString(parser.buildTileListXML(server.drawPile.getPile())),
+                parser.documentToString(parser.buildSPlayerListXML(server, server.inSPlayers)),
+                parser.documentToString(parser.buildSPlayerListXML(server, server.outSPlayers)),
+                parser.documentToString(parser.boardParser.buildXML(server.board)),
+                parser.documentToString(parser.buildWinnersXML(server, null))
+        };
+    }
+
+    @Benchmark
+    public Server playATurnDecode(Blackhole bh) throws Exception {
+        Board board = parser.boardParser.fromXML(parser.stringToDocument(playATurn[3]));
+        Pair<List<SPlayer>, SPlayer> inRes = parser.fromSPlayerListXML(playATurn[1], board);
+        Pair<List<SPlayer>, SPlayer> outRes = parser.fromSPlayerListXML(playATurn[2], board);
+        Tile tileToPlay = parser.tileParser.fromXML(parser.stringToDocument(playATurn[4]));
+        List<Tile> tileList = parser.fromTileSetXML(parser.stringToDocument(playATurn[0]));
+
+        Server s = new Server();
+        s.setState(board, inRes.first, outRes.first, new ArrayList<>(), new Deck(tileList));
+        s.giveDragon(inRes.second);
+        bh.consume(tileToPlay);
+        return s;
+    }
+}
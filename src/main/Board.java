@@ -6,12 +6,59 @@ import java.util.List;
 public class Board {
 
     public final int SIZE = 6;
+    // offset to the adjacent tile for a token at each index on tile
+    private static final int[] DX = new int[] {0, 0, 1, 1, 0, 0, -1, -1};
+    private static final int[] DY = new int[] {-1, -1, 0, 0, 1, 1, 0, 0};
+    // Zobrist keys of every (location, canonical tile code) and every (color, packed token position);
+    // fixed seed so that hashes are comparable between runs
+    private static final long[] TILE_KEYS = new long[36 * Tile.NUM_TILES * 4];
+    private static final long[] TOKEN_KEYS = new long[8 * 512];
+
+    // one shared tile per tile code for makeMove, so that moves do not allocate; never rotated
+    private static final Tile[] CODE_TILES = new Tile[Tile.NUM_TILES * 4];
+
+    static {
+        for (int code = 0; code < CODE_TILES.length; code++) {
+            CODE_TILES[code] = new Tile(code / 4, code % 4);
+        }
+        Random rand = new Random(0x7505E0L);
+        for (int i = 0; i < TILE_KEYS.length; i++) {
+            TILE_KEYS[i] = rand.nextLong();
+        }
+        for (int i = 0; i < TOKEN_KEYS.length; i++) {
+            TOKEN_KEYS[i] = rand.nextLong();
+        }
+    }
+
     private Tile[][] board;
     private List<SPlayer> sPlayerList;
+    // where the path through every port of a placed tile ends
+    private PortGraph portGraph;
+    // number of tiles on board and the set of their ids, one bit per id
+    private int tileCount;
+    private long placedIds;
+    // copies of each id on board; boards built by hand in tests may hold the same tile more than once
+    private final int[] idCount = new int[Tile.NUM_TILES];
+    // xor of the keys of all tiles on board
+    private long tileHash;
+    // pawns moved by makeMove: packed position by color, -1 if the color has no pawn;
+    // eliminated pawns keep their position off board
+    private final int[] pawns = new int[] {-1, -1, -1, -1, -1, -1, -1, -1};
+    private int pawnsOnBoard;
+    // xor of the keys of the pawns that are still on board
+    private long pawnHash;
+    // undo stack of makeMove: location, then (color, old position) of every moved pawn, then the number moved
+    private int[] moves = new int[Tile.NUM_TILES * 18];
+    private int movesSize;
 
     public Board() {
+        this(new PortGraph());
+    }
+
+    private Board(PortGraph portGraph) {
         this.board = new Tile[SIZE][SIZE];
         this.sPlayerList = new ArrayList<>();
+        this.portGraph = portGraph;
     }
 
     public Tile[][] getBoard() {
@@ -35,24 +82,34 @@ public class Board {
         return board[x][y];
     }
 
+    /**
+     * Create a board with the same tiles on the same locations and no players
+     * @return a new board sharing the tiles of this board
+     */
+    public Board copyTiles() {
+        Board copy = new Board(new PortGraph(portGraph));
+        for (int x = 0; x < SIZE; x++) {
+            System.arraycopy(board[x], 0, copy.board[x], 0, SIZE);
+        }
+        copy.tileCount = tileCount;
+        copy.placedIds = placedIds;
+        System.arraycopy(idCount, 0, copy.idCount, 0, idCount.length);
+        copy.tileHash = tileHash;
+        return copy;
+    }
+
     /**
      * Return if the board contains the given tile
      * @param tile a tile to be checked
      * @return
      */
     public boolean containsTile(Tile tile) {
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                if (getTile(i, j) != null && getTile(i, j).isSameTile(tile)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return (placedIds & 1L << tile.getId()) != 0;
     }
 
     /**
      * Place the given tile in the given location
+     * The tile must not be rotated while it is on the board
      * @param tile a tile to be placed
      * @param x the x-coordinate of the given location
      * @param y the y-coordinate of the given location
@@ -62,11 +119,16 @@ public class Board {
             throw new IllegalArgumentException("This location has another tile");
         }
         board[x][y] = tile;
+        tileCount++;
+        idCount[tile.getId()]++;
+        placedIds |= 1L << tile.getId();
+        tileHash ^= tileKey(tile.getCode(), x, y);
+        portGraph.addTile(tile, x, y);
     }
 
     /**
      * Delete the tile in the given location if it currently has a tile
-     * Should only be used in Server.legalPlay()
+     * Constant time if it is the most recently placed tile
      * @param x the x-coordinate of the given location
      * @param y the y-coordinate of the given location
      */
@@ -74,7 +136,127 @@ public class Board {
         if (board[x][y] == null) {
             throw new IllegalArgumentException("The location given doesn't contain a tile");
         }
+        Tile tile = board[x][y];
         board[x][y] = null;
+        tileCount--;
+        tileHash ^= tileKey(tile.getCode(), x, y);
+        if (--idCount[tile.getId()] == 0) {
+            placedIds &= ~(1L << tile.getId());
+        }
+        portGraph.removeTile(x, y);
+    }
+
+    /**
+     * Set the pawns moved by makeMove to the tokens of the SPlayers on board
+     */
+    public void loadPawns() {
+        for (int color = 0; color < pawns.length; color++) {
+            setPawn(color, -1);
+        }
+        for (SPlayer sp : sPlayerList) {
+            setPawn(sp.getToken().getColor(), sp.getToken().pack());
+        }
+    }
+
+    /**
+     * Set or remove the pawn of a color moved by makeMove
+     * @param color color of the pawn
+     * @param packed packed position of the pawn, see Token.pack(); -1 to remove the pawn
+     */
+    public void setPawn(int color, int packed) {
+        if (isPawnOnBoard(pawns[color])) {
+            pawnsOnBoard--;
+            pawnHash ^= tokenKey(color, pawns[color]);
+        }
+        pawns[color] = packed;
+        if (isPawnOnBoard(packed)) {
+            pawnsOnBoard++;
+            pawnHash ^= tokenKey(color, packed);
+        }
+    }
+
+    /**
+     * Get the position of the pawn of a color
+     * @param color color of the pawn
+     * @return packed position, off board if the pawn is eliminated; -1 if the color has no pawn
+     */
+    public int getPawn(int color) {
+        return pawns[color];
+    }
+
+    /**
+     * Check whether the pawn of a color is still in the game
+     * @param color color of the pawn
+     * @return true if the color has a pawn that is not eliminated
+     */
+    public boolean hasPawnOnBoard(int color) {
+        return isPawnOnBoard(pawns[color]);
+    }
+
+    /**
+     * Get the number of pawns that are not eliminated
+     * @return number of pawns on board
+     */
+    public int getPawnsOnBoard() {
+        return pawnsOnBoard;
+    }
+
+    /**
+     * Get the hash of the pawns that are not eliminated, kept up to date by setPawn, makeMove and unmakeMove,
+     * and by addSPlayer, removeSPlayer and updateToken for the tokens of SPlayers;
+     * xor it with getTileHash() to hash a search position
+     * @return hash of the pawns
+     */
+    public long getPawnHash() {
+        return pawnHash;
+    }
+
+    private static boolean isPawnOnBoard(int packed) {
+        return packed >= 0 && !Token.isOffBoard(packed);
+    }
+
+    /**
+     * Play a whole turn for search: place a tile in front of the pawn of a color and move every pawn facing it,
+     * eliminating the pawns that leave the board; the move is not validated and nothing is allocated
+     * @param color color of the pawn placing the tile, which must be on board
+     * @param tileCode code of the tile, see Tile.getCode()
+     * @return the set of colors eliminated by this move, one bit per color
+     */
+    public int makeMove(int color, int tileCode) {
+        int x = getAdjacentX(pawns[color]);
+        int y = getAdjacentY(pawns[color]);
+        placeTile(CODE_TILES[tileCode], x, y);
+        moves[movesSize++] = x * SIZE + y;
+        int moved = 0;
+        int eliminated = 0;
+        for (int c = 0; c < pawns.length; c++) {
+            int packed = pawns[c];
+            if (isPawnOnBoard(packed) && getAdjacentX(packed) == x && getAdjacentY(packed) == y) {
+                moves[movesSize++] = c;
+                moves[movesSize++] = packed;
+                moved++;
+                setPawn(c, simulateMove(packed));
+                if (!isPawnOnBoard(pawns[c])) {
+                    eliminated |= 1 << c;
+                }
+            }
+        }
+        moves[movesSize++] = moved;
+        return eliminated;
+    }
+
+    /**
+     * Revert the last move made by makeMove exactly, in constant time
+     */
+    public void unmakeMove() {
+        int moved = moves[--movesSize];
+        for (int i = 0; i < moved; i++) {
+            int packed = moves[--movesSize];
+            int c = moves[--movesSize];
+            setPawn(c, packed);
+        }
+        int location = moves[--movesSize];
+        deleteTile(location / SIZE, location % SIZE);
     }
 
     /**
@@ -114,6 +296,17 @@ public class Board {
             throw new IllegalArgumentException("SPlayer's token given already exists on board");
         }
         sPlayerList.add(sPlayer);
+        setPawn(sPlayer.getToken().getColor(), sPlayer.getToken().pack());
+    }
+
+    /**
+     * Move the token of a SPlayer on this board, keeping the hash of the pawns up to date
+     * @param sPlayer a SPlayer on this board
+     * @param token new token of the SPlayer
+     */
+    public void updateToken(SPlayer sPlayer, Token token) {
+        sPlayer.updateToken(token);
+        setPawn(token.getColor(), token.pack());
     }
 
     /**
@@ -124,6 +317,7 @@ public class Board {
         if (!containsSPlayer(sPlayer))
             throw new IllegalArgumentException("SPlayer's token doesn't exist on board");
         sPlayerList.remove(sPlayer);
+        setPawn(sPlayer.getToken().getColor(), -1);
     }
 
     /**
@@ -147,15 +341,56 @@ public class Board {
      * @return true if the board is full
      */
     public boolean isFull() {
-        int count = 0;
-        for (int x = 0; x < 6; x++){
-            for (int y = 0; y < 6; y++) {
-                if (getTile(x, y) != null) {
-                    count++;
-                }
-            }
-        }
-        return count == 35;
+        return tileCount == Tile.NUM_TILES;
+    }
+
+    /**
+     * Get a 64-bit hash of the tiles and the pawns on board, updated with every move; boards with the same
+     * tiles, up to rotations with identical paths, and the same pawns that are not eliminated have the same
+     * hash, which is also the hash of GameState for the same position. Tokens of SPlayers count once added
+     * with addSPlayer and moved with updateToken.
+     * @return hash of the position
+     */
+    public long getHash() {
+        return tileHash ^ pawnHash;
+    }
+
+    /**
+     * Get the hash of the tiles on board only, kept up to date by placeTile and deleteTile
+     * @return hash of the tiles
+     */
+    public long getTileHash() {
+        return tileHash;
+    }
+
+    /**
+     * Get the Zobrist key of a tile on a location
+     * @param tileCode code of the tile
+     * @param x x-coordinate of the tile
+     * @param y y-coordinate of the tile
+     * @return the key
+     */
+    public static long tileKey(int tileCode, int x, int y) {
+        return TILE_KEYS[(x * 6 + y) * Tile.NUM_TILES * 4 + Tile.getOrientation(tileCode)];
+    }
+
+    /**
+     * Get the Zobrist key of a token; searches that move tokens without SPlayers can xor these
+     * with getTileHash() to hash their positions
+     * @param color color of the token
+     * @param packed packed position of the token, see Token.pack()
+     * @return the key
+     */
+    public static long tokenKey(int color, int packed) {
+        return TOKEN_KEYS[color * 512 + packed];
+    }
+
+    /**
+     * Get the number of tiles on board
+     * @return number of tiles on board
+     */
+    public int getTileCount() {
+        return tileCount;
     }
 
     /**
@@ -182,22 +417,73 @@ public class Board {
     /**
      * Simulate the path taken by a token given a board
      * @param token token that attempts making the move
-     * @return a copy of the original token with new position and index
+     * @return the original token if it does not move; otherwise a copy of it with new position and index
      */
     public Token simulateMove(Token token) {
-        // next location the token can go on
-        int[] newPosition = getAdjacentLocation(token);
-        Tile nextTile = getTile(newPosition[0], newPosition[1]);
-        // base case, return if reached the end of path
-        if (nextTile == null) {
-            return token;
+        int start = token.pack();
+        int end = simulateMove(start);
+        return end == start ? token : Token.fromPacked(token.getColor(), end);
+    }
+
+    /**
+     * Simulate the path taken by a token given a board, without creating any object
+     * @param packed packed position of the token that attempts making the move, see Token.pack()
+     * @return packed position at the end of the path
+     */
+    public int simulateMove(int packed) {
+        if (getTile(getAdjacentX(packed), getAdjacentY(packed)) == null) {
+            return packed;
+        }
+        return portGraph.endOfPath(packed);
+    }
+
+    /**
+     * Simulate the path taken by a token if the given tile were placed on the adjacent location of the token,
+     * without modifying the board
+     * @param packed packed position of the token that attempts making the move
+     * @param tile the tile to be placed
+     * @return packed position at the end of the path
+     */
+    public int simulateMove(int packed, Tile tile) {
+        return simulateMove(packed, tile.getCode());
+    }
+
+    /**
+     * Simulate the path taken by a token if a tile were placed on the adjacent location of the token,
+     * without modifying the board
+     * @param packed packed position of the token that attempts making the move
+     * @param tileCode code of the tile to be placed, see Tile.getCode()
+     * @return packed position at the end of the path
+     */
+    public int simulateMove(int packed, int tileCode) {
+        int x = getAdjacentX(packed);
+        int y = getAdjacentY(packed);
+        if (x < 0 || y < 0 || x >= SIZE || y >= SIZE || board[x][y] != null) {
+            throw new IllegalArgumentException("The location in front of the token is not an empty location");
+        }
+        return portGraph.endOfPathWith(packed, tileCode);
+    }
+
+    /**
+     * Trace the path taken by a token tile by tile; same result as simulateMove(int)
+     * @param packed packed position of the token that attempts making the move
+     * @return packed position at the end of the path
+     */
+    int traceMove(int packed) {
+        int x = Token.packedX(packed);
+        int y = Token.packedY(packed);
+        int index = Token.packedIndex(packed);
+        while (true) {
+            int nextX = x + DX[index];
+            int nextY = y + DY[index];
+            // reached the end of path
+            if (nextX < 0 || nextY < 0 || nextX >= SIZE || nextY >= SIZE || board[nextX][nextY] == null) {
+                return Token.pack(x, y, index);
+            }
+            index = board[nextX][nextY].getPathEnd(Tile.NEIGHBOR_INDEX[index]);
+            x = nextX;
+            y = nextY;
         }
-        // simulate moving token & get new token index
-        int pathStart = Tile.neighborIndex.get(token.getIndex());
-        int pathEnd = nextTile.getPathEnd(pathStart);
-        // recursion step
-        Token nt = new Token(token.getColor(), newPosition, pathEnd);
-        return simulateMove(nt);
     }
 
     /**
@@ -206,23 +492,25 @@ public class Board {
      * @return an array of location [x,y] of the adjacent tile
      */
     public static int[] getAdjacentLocation(Token token) {
-        int[] next = new int[2];
-        int x = token.getPosition()[0];
-        int y = token.getPosition()[1];
-        int indexOnTile = token.getIndex();
-        if (indexOnTile == 0 || indexOnTile == 1) {
-            next[0] = x;
-            next[1] = y - 1;
-        } else if (indexOnTile == 2 || indexOnTile == 3) {
-            next[0] = x + 1;
-            next[1] = y;
-        } else if (indexOnTile == 4 || indexOnTile == 5) {
-            next[0] = x;
-            next[1] = y + 1;
-        } else {
-            next[0] = x - 1;
-            next[1] = y;
-        }
-        return next;
+        int packed = token.pack();
+        return new int[] {getAdjacentX(packed), getAdjacentY(packed)};
+    }
+
+    /**
+     * Find the x-coordinate of the adjacent position on board given a packed token position
+     * @param packed packed token position
+     * @return x-coordinate of the adjacent tile
+     */
+    public static int getAdjacentX(int packed) {
+        return Token.packedX(packed) + DX[Token.packedIndex(packed)];
+    }
+
+    /**
+     * Find the y-coordinate of the adjacent position on board given a packed token position
+     * @param packed packed token position
+     * @return y-coordinate of the adjacent tile
+     */
+    public static int getAdjacentY(int packed) {
+        return Token.packedY(packed) + DY[Token.packedIndex(packed)];
     }
 }
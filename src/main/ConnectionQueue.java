@@ -0,0 +1,66 @@
+package tsuro;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Hands connections accepted by a listener to the claims of PlayerListener.accept(), in order
+ */
+class ConnectionQueue {
+    // connections not yet claimed, and claims waiting for a connection; guarded by this
+    private final Queue<PlayerConnection> accepted = new ArrayDeque<>();
+    private final Queue<CompletableFuture<PlayerConnection>> waiting = new ArrayDeque<>();
+    private boolean closed;
+
+    CompletableFuture<PlayerConnection> claim() {
+        synchronized (this) {
+            if (!accepted.isEmpty()) {
+                return CompletableFuture.completedFuture(accepted.poll());
+            }
+            CompletableFuture<PlayerConnection> connection = new CompletableFuture<>();
+            if (closed) {
+                connection.completeExceptionally(new ClosedChannelException());
+            }
+            else {
+                waiting.add(connection);
+            }
+            return connection;
+        }
+    }
+
+    void offer(PlayerConnection connection) {
+        CompletableFuture<PlayerConnection> claim;
+        synchronized (this) {
+            claim = waiting.poll();
+            if (claim == null) {
+                accepted.add(connection);
+            }
+        }
+        // complete outside the lock, the claim may go on to claim more
+        if (claim != null) {
+            claim.complete(connection);
+        }
+    }
+
+    /**
+     * Fail every waiting claim and every later one
+     * @return the connections never claimed
+     */
+    Queue<PlayerConnection> close() {
+        Queue<CompletableFuture<PlayerConnection>> claims;
+        Queue<PlayerConnection> unclaimed;
+        synchronized (this) {
+            closed = true;
+            claims = new ArrayDeque<>(waiting);
+            waiting.clear();
+            unclaimed = new ArrayDeque<>(accepted);
+            accepted.clear();
+        }
+        for (CompletableFuture<PlayerConnection> claim : claims) {
+            claim.completeExceptionally(new ClosedChannelException());
+        }
+        return unclaimed;
+    }
+}
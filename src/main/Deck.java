@@ -1,104 +1,143 @@
 package tsuro;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Random;
 
 public class Deck {
 
-    private List<Tile> pile;
+    // tiles of the pile are tiles[head] (top) to tiles[tail - 1] (bottom)
+    private Tile[] tiles;
+    private int head;
+    private int tail;
+    // set of tile ids in the pile, one bit per id, and the copies of each id;
+    // piles built by hand in tests may hold the same tile more than once
+    private long ids;
+    private final int[] idCount = new int[Tile.NUM_TILES];
+    private Random random;
 
+    /**
+     * Create a deck of all 35 tiles in id order
+     */
     public Deck() {
-        // initialize by adding all 35 tiles
-        pile = new ArrayList<>();
-        int[][][] input = new int[][][] {   {{0, 1}, {2, 3}, {4, 5}, {6, 7}},
-                                            {{0, 1}, {2, 4}, {3, 6}, {5, 7}},
-                                            {{0, 6}, {1, 5}, {2, 4}, {3, 7}},
-                                            {{0, 5}, {1, 4}, {2, 7}, {3, 6}},
-                                            {{0, 2}, {1, 4}, {3, 7}, {5, 6}},
-                                            {{0, 4}, {1, 7}, {2, 3}, {5, 6}},
-                                            {{0, 1}, {2, 6}, {3, 7}, {4, 5}},
-                                            {{0, 2}, {1, 6}, {3, 7}, {4, 5}},
-                                            {{0, 4}, {1, 5}, {2, 6}, {3, 7}},
-                                            {{0, 1}, {2, 7}, {3, 4}, {5, 6}},
-                                            {{0, 2}, {1, 7}, {3, 4}, {5, 6}},
-                                            {{0, 3}, {1, 5}, {2, 7}, {4, 6}},
-                                            {{0, 4}, {1, 3}, {2, 7}, {5 ,6}},
-                                            {{0, 3}, {1, 7}, {2, 6}, {4, 5}},
-                                            {{0, 1}, {2, 5}, {3, 6}, {4, 7}},
-                                            {{0, 3}, {1, 6}, {2, 5}, {4, 7}},
-                                            {{0, 1}, {2, 7}, {3, 5}, {4, 6}},
-                                            {{0, 7}, {1, 6}, {2, 3}, {4, 5}},
-                                            {{0, 7}, {1, 2}, {3, 4}, {5, 6}},
-                                            {{0, 2}, {1, 4}, {3, 6}, {5, 7}},
-                                            {{0, 7}, {1, 3}, {2, 5}, {4, 6}},
-                                            {{0, 7}, {1, 5}, {2, 6}, {3, 4}},
-                                            {{0, 4}, {1, 5}, {2, 7}, {3, 6}},
-                                            {{0, 1}, {2, 4}, {3, 5}, {6, 7}},
-                                            {{0, 2}, {1, 7}, {3, 5}, {4, 6}},
-                                            {{0, 7}, {1, 5}, {2, 3}, {4, 6}},
-                                            {{0, 4}, {1, 3}, {2, 6}, {5, 7}},
-                                            {{0, 6}, {1, 3}, {2, 5}, {4, 7}},
-                                            {{0, 1}, {2, 7}, {3, 6}, {4, 5}},
-                                            {{0, 3}, {1, 2}, {4, 6}, {5, 7}},
-                                            {{0, 3}, {1, 5}, {2, 6}, {4, 7}},
-                                            {{0, 7}, {1, 6}, {2, 5}, {3, 4}},
-                                            {{0, 2}, {1, 3}, {4, 6}, {5, 7}},
-                                            {{0, 5}, {1, 6}, {2, 7}, {3, 4}},
-                                            {{0, 5}, {1, 3}, {2, 6}, {4, 7}}    };
-        for (int i = 0; i < input.length; i++) {
-            Tile t = new Tile(input[i]);
-            pile.add(t);
+        this.tiles = new Tile[Tile.NUM_TILES];
+        this.random = new Random();
+        for (int id = 0; id < Tile.NUM_TILES; id++) {
+            push(new Tile(id, 0));
         }
     }
 
+    /**
+     * Create a shuffled deck of all 35 tiles
+     * @param random shuffles the deck now and whenever tiles are returned to it; seed it to make the deals
+     *               of a game reproducible
+     */
+    public Deck(Random random) {
+        this();
+        this.random = random;
+        shuffle();
+    }
+
     Deck (List<Tile> pile) {
-        this.pile = pile;
+        this(pile, new Random());
+    }
+
+    Deck (List<Tile> pile, Random random) {
+        this.tiles = new Tile[Math.max(pile.size(), Tile.NUM_TILES)];
+        this.random = random;
+        for (Tile t : pile) {
+            push(t);
+        }
+    }
+
+    Random getRandom() {
+        return random;
     }
 
     public int size() {
-        return pile == null ? 0 : pile.size();
+        return tail - head;
     }
 
-    public List<Tile> getPile() {return pile;}
+    /**
+     * Get the tiles of the pile from top to bottom
+     * @return a copy of the pile
+     */
+    public List<Tile> getPile() {
+        List<Tile> pile = new ArrayList<>(size());
+        for (int i = head; i < tail; i++) {
+            pile.add(tiles[i]);
+        }
+        return pile;
+    }
 
     public Tile get(int index) {
-        return pile.get(index);
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return tiles[head + index];
     }
 
     public boolean isEmpty() {
-        return pile.isEmpty();
+        return head == tail;
     }
 
     public Tile pop() {
         if (isEmpty()) {
             throw new NoSuchElementException("Error: Can't draw tile from an empty deck");
         }
-        return pile.remove(0);
+        Tile tile = tiles[head];
+        tiles[head++] = null;
+        if (--idCount[tile.getId()] == 0) {
+            ids &= ~(1L << tile.getId());
+        }
+        return tile;
     }
 
     public Tile peek() {
         if (isEmpty()) {
             throw new NoSuchElementException("Error: Can't draw tile from an empty deck");
         }
-        return pile.get(0);
+        return tiles[head];
     }
 
     public boolean containsTile(Tile tile) {
-        for (Tile t : pile) {
-            if (tile.isSameTile(t)) {
-                return true;
-            }
-        }
-        return false;
+        return (ids & 1L << tile.getId()) != 0;
     }
 
+    /**
+     * Shuffle the pile with Fisher-Yates over the random source of the deck
+     */
     public void shuffle() {
-        Collections.shuffle(pile);
+        for (int i = tail - 1; i > head; i--) {
+            int j = head + random.nextInt(i - head + 1);
+            Tile temp = tiles[i];
+            tiles[i] = tiles[j];
+            tiles[j] = temp;
+        }
     }
 
     public void addAndShuffle(List<Tile> l) {
-        pile.addAll(l);
+        for (Tile t : l) {
+            push(t);
+        }
         shuffle();
     }
+
+    /**
+     * Add a tile to the bottom of the pile, moving the pile to the front of the array when it reaches the end
+     * @param tile tile to be added
+     */
+    private void push(Tile tile) {
+        if (tail == tiles.length) {
+            int size = size();
+            Tile[] moved = size < tiles.length ? new Tile[tiles.length] : new Tile[tiles.length * 2];
+            System.arraycopy(tiles, head, moved, 0, size);
+            tiles = moved;
+            head = 0;
+            tail = size;
+        }
+        tiles[tail++] = tile;
+        idCount[tile.getId()]++;
+        ids |= 1L << tile.getId();
+    }
 }
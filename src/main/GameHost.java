@@ -0,0 +1,258 @@
+package tsuro;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts any number of tables of remote players on one port
+ *
+ * Clients connect exactly as Admin does, and each time enough clients have connected they are seated at
+ * a new table whose game runs on the executor of the host. Every table has its own Server, players and
+ * document builder, so tables share nothing but the listener and the latencies. No thread ever waits for
+ * a client to connect. Two transports are available:
+ * - a SelectorServer carries every connection on a single event loop thread, and the game threads hold
+ *   no socket; a fixed pool of game threads can serve any number of connected clients
+ * - threadPerTable() plays every table on its own thread over blocking sockets. These are virtual threads
+ *   when the JDK has them, so blocking costs little and tens of thousands of tables can play at once;
+ *   otherwise platform threads
+ */
+public class GameHost implements AutoCloseable {
+
+    private final PlayerListener listener;
+    private final int playersPerTable;
+    private final ExecutorService tables;
+    private final AtomicLong tablesStarted = new AtomicLong();
+    private final AtomicLong gamesPlayed = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final Latencies latencies = new Latencies();
+    private volatile boolean closed;
+    private volatile long deadline;
+
+    /**
+     * Host tables over a SelectorServer
+     * @param port port number; 0 for any free port
+     * @param playersPerTable number of clients seated at every table, 2 to 8
+     * @param tables runs the games of the tables
+     */
+    public GameHost(int port, int playersPerTable, ExecutorService tables) throws IOException {
+        this(new SelectorServer(port), playersPerTable, tables);
+    }
+
+    /**
+     * @param listener hands out the connections of clients; closed with the host
+     * @param playersPerTable number of clients seated at every table, 2 to 8
+     * @param tables runs the games of the tables; shut down with the host
+     */
+    public GameHost(PlayerListener listener, int playersPerTable, ExecutorService tables) {
+        if (playersPerTable < 2 || playersPerTable > 8) {
+            listener.close();
+            throw new IllegalArgumentException("Number of players should be between 2 and 8");
+        }
+        this.listener = listener;
+        this.playersPerTable = playersPerTable;
+        this.tables = tables;
+    }
+
+    /**
+     * Host tables over blocking sockets, each table playing on a thread of its own
+     * @param port port number; 0 for any free port
+     * @param playersPerTable number of clients seated at every table, 2 to 8
+     */
+    public static GameHost threadPerTable(int port, int playersPerTable) throws IOException {
+        return new GameHost(new SocketListener(port), playersPerTable, newThreadPerTaskExecutor());
+    }
+
+    /**
+     * Get an executor starting a virtual thread for every task, or a platform thread before Java 21
+     */
+    static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * @return whether newThreadPerTaskExecutor() starts virtual threads
+     */
+    static boolean hasVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    public int getPort() throws IOException {
+        return listener.getPort();
+    }
+
+    /**
+     * Set the deadline of every call to a client in the games started from now on; see Server.setDeadline
+     * @param millis deadline in milliseconds; 0 for none
+     */
+    public void setDeadline(long millis) {
+        this.deadline = millis;
+    }
+
+    /**
+     * Start seating clients at tables as they connect; returns immediately
+     */
+    public void start() {
+        seatTables();
+    }
+
+    /**
+     * Seat clients at tables until seating stops; tables whose clients have all connected already, e.g.
+     * before start(), are seated in a loop, and a table still waiting goes on from a task of its own once
+     * it is full, so that seating never nests calls however many clients are waiting
+     */
+    private void seatTables() {
+        while (!closed) {
+            List<CompletableFuture<PlayerConnection>> seats = new ArrayList<>();
+            for (int i = 0; i < playersPerTable; i++) {
+                seats.add(listener.accept());
+            }
+            CompletableFuture<Void> table = CompletableFuture.allOf(seats.toArray(new CompletableFuture<?>[0]));
+            if (!table.isDone()) {
+                table.whenCompleteAsync((ignored, failure) -> {
+                    if (seat(seats)) {
+                        seatTables();
+                    }
+                });
+                return;
+            }
+            if (!seat(seats)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Start the game of a table whose seats are all claimed
+     * @param seats claims of the clients of the table, all complete
+     * @return false if seating has stopped, as the listener or the host has closed; the clients already
+     *         claimed for the table are then disconnected
+     */
+    private boolean seat(List<CompletableFuture<PlayerConnection>> seats) {
+        List<PlayerConnection> connections = new ArrayList<>();
+        Throwable failure = null;
+        for (CompletableFuture<PlayerConnection> seat : seats) {
+            try {
+                connections.add(seat.join());
+            } catch (CompletionException | CancellationException e) {
+                failure = e.getCause() != null ? e.getCause() : e;
+            }
+        }
+        if (failure == null && !closed) {
+            try {
+                tables.execute(() -> playTable(connections));
+                tablesStarted.incrementAndGet();
+                return true;
+            } catch (RejectedExecutionException e) {
+                failure = e;
+            }
+        }
+        if (!closed) {
+            System.err.println("GameHost: stopped seating clients: " + failure);
+        }
+        for (PlayerConnection connection : connections) {
+            connection.close();
+        }
+        return false;
+    }
+
+    /**
+     * Play one game between the clients of a table, then disconnect them
+     */
+    private void playTable(List<PlayerConnection> connections) {
+        try {
+            DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            List<APlayer> players = new ArrayList<>();
+            for (PlayerConnection connection : connections) {
+                RemotePlayer player = new RemotePlayer(connection, db);
+                player.verbose = false;
+                players.add(player);
+            }
+            Server server = new Server();
+            server.setDeadline(deadline);
+            server.playGame(players);
+            latencies.add(server.latencies);
+            gamesPlayed.incrementAndGet();
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            System.err.println("GameHost: table failed: " + e);
+        } finally {
+            for (PlayerConnection connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    public long getTablesStarted() {
+        return tablesStarted.get();
+    }
+
+    public long getGamesPlayed() {
+        return gamesPlayed.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * Get the latencies of all games played so far
+     * @return latency histograms by phase, with playTurn latencies by color and player name
+     */
+    public Latencies getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Stop seating clients; over a SelectorServer also disconnect everyone, failing the games in progress
+     */
+    public void close() {
+        closed = true;
+        listener.close();
+        tables.shutdown();
+    }
+
+    // CML arguments:
+    // 0: Port_Number,
+    // 1: Number_of_Players_per_Table,
+    // 2: Number_of_Threads running games, 0 for a thread per table over blocking sockets
+    // 3: Deadline of every call to a client in milliseconds (optional)
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        int playersPerTable = Integer.parseInt(args[1]);
+        int threads = Integer.parseInt(args[2]);
+        GameHost host = threads == 0 ? threadPerTable(port, playersPerTable)
+                : new GameHost(port, playersPerTable, Executors.newFixedThreadPool(threads));
+        if (args.length > 3) {
+            host.setDeadline(Long.parseLong(args[3]));
+        }
+        host.start();
+        System.out.println("GameHost: listening on port " + host.getPort()
+                + (threads > 0 ? "" : hasVirtualThreads() ? ", a virtual thread per table" : ", a thread per table"));
+        while (!host.tables.awaitTermination(10, TimeUnit.SECONDS)) {
+            System.out.println("GameHost: tables = " + host.getTablesStarted() + ", games = "
+                    + host.getGamesPlayed() + ", errors = " + host.getErrors());
+        }
+    }
+}
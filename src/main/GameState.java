@@ -0,0 +1,397 @@
+package tsuro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable position of a game: the tiles on board, the pawn and the hand of every color, the draw pile,
+ * the turn order and the holder of the dragon tile
+ *
+ * Applying a move returns a new state that shares everything but the changed row of tiles and the pawns
+ * with the old one: tiles are kept in a two-level trie of 6 rows of 6 tile codes, so a move copies the
+ * array of rows, one row and the 8 pawns. Hands are shared the same way, one array of tile ids per color,
+ * and drawing a tile shares the pile array and only moves its top. States never change after they are
+ * created, so one state can be read by any number of threads without locks or copies.
+ */
+public final class GameState {
+
+    private static final int SIZE = 6;
+    private static final int[] DX = new int[] {0, 0, 1, 1, 0, 0, -1, -1};
+    private static final int[] DY = new int[] {-1, -1, 0, 0, 1, 1, 0, 0};
+    private static final int[] EMPTY_ROW = new int[] {-1, -1, -1, -1, -1, -1};
+    private static final int[] NO_PAWNS = new int[] {-1, -1, -1, -1, -1, -1, -1, -1};
+    private static final int[] NO_TILES = new int[0];
+    private static final int[][] NO_HANDS = new int[][] {NO_TILES, NO_TILES, NO_TILES, NO_TILES, NO_TILES,
+            NO_TILES, NO_TILES, NO_TILES};
+
+    // tile code of every location by rows[x][y], -1 if empty; rows are shared between states
+    private final int[][] rows;
+    // packed position of the pawn of every color, off board once eliminated, -1 if the color has no pawn
+    private final int[] pawns;
+    private final int tileCount;
+    private final long placedIds;
+    private final long tileHash;
+    private final long pawnHash;
+    // tile ids in the hand of every color; hands are shared between states
+    private final int[][] hands;
+    // tile ids of the draw pile from pile[pileTop] (top) to the end (bottom); shared between states
+    private final int[] pile;
+    private final int pileTop;
+    // colors still in the game in turn order, the color to play first
+    private final int[] order;
+    // color holding the dragon tile, -1 if none
+    private final int dragon;
+
+    /**
+     * The state of an empty board without pawns, hands, pile or players
+     */
+    public static final GameState EMPTY = new GameState(
+            new int[][] {EMPTY_ROW, EMPTY_ROW, EMPTY_ROW, EMPTY_ROW, EMPTY_ROW, EMPTY_ROW},
+            NO_PAWNS, 0, 0, 0, 0, NO_HANDS, NO_TILES, 0, NO_TILES, -1);
+
+    private GameState(int[][] rows, int[] pawns, int tileCount, long placedIds, long tileHash, long pawnHash,
+                      int[][] hands, int[] pile, int pileTop, int[] order, int dragon) {
+        this.rows = rows;
+        this.pawns = pawns;
+        this.tileCount = tileCount;
+        this.placedIds = placedIds;
+        this.tileHash = tileHash;
+        this.pawnHash = pawnHash;
+        this.hands = hands;
+        this.pile = pile;
+        this.pileTop = pileTop;
+        this.order = order;
+        this.dragon = dragon;
+    }
+
+    /**
+     * Take a snapshot of the whole position of a game: its board, the hands of the players in the game,
+     * the draw pile, the turn order and the holder of the dragon tile
+     * @param server the game
+     * @return the state of the game
+     */
+    public static GameState of(Server server) {
+        GameState state = of(server.board);
+        int[] order = new int[server.inSPlayers.size()];
+        for (int i = 0; i < order.length; i++) {
+            SPlayer sp = server.inSPlayers.get(i);
+            order[i] = sp.getToken().getColor();
+            state = state.withHand(order[i], ids(sp.getHand()));
+        }
+        state = state.withPile(ids(server.drawPile.getPile())).withTurnOrder(order);
+        return state.withDragon(server.dragonHolder == null ? -1 : server.dragonHolder.getToken().getColor());
+    }
+
+    private static int[] ids(List<Tile> tiles) {
+        int[] ids = new int[tiles.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = tiles.get(i).getId();
+        }
+        return ids;
+    }
+
+    /**
+     * Take a snapshot of the tiles and the tokens of the SPlayers on a board
+     * @param b the board
+     * @return the state of the board
+     */
+    public static GameState of(Board b) {
+        GameState state = EMPTY;
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                Tile tile = b.getTile(x, y);
+                if (tile != null) {
+                    state = state.withTile(tile.getCode(), x, y);
+                }
+            }
+        }
+        for (SPlayer sp : b.getSPlayerList()) {
+            state = state.withPawn(sp.getToken().getColor(), sp.getToken().pack());
+        }
+        return state;
+    }
+
+    /**
+     * Get a state with a tile added, without moving any pawn
+     * @param tileCode code of the tile, see Tile.getCode()
+     * @param x x-coordinate of an empty location
+     * @param y y-coordinate of an empty location
+     * @return the new state
+     */
+    public GameState withTile(int tileCode, int x, int y) {
+        if (getTileCode(x, y) != -1) {
+            throw new IllegalArgumentException("This location has another tile");
+        }
+        int[][] newRows = rows.clone();
+        newRows[x] = rows[x].clone();
+        newRows[x][y] = tileCode;
+        int id = tileCode / 4;
+        return new GameState(newRows, pawns, tileCount + 1, placedIds | 1L << id,
+                tileHash ^ Board.tileKey(tileCode, x, y), pawnHash, hands, pile, pileTop, order, dragon);
+    }
+
+    /**
+     * Get a state with the pawn of a color set
+     * @param color color of the pawn
+     * @param packed packed position of the pawn, see Token.pack(); -1 to remove the pawn
+     * @return the new state
+     */
+    public GameState withPawn(int color, int packed) {
+        int[] newPawns = pawns.clone();
+        newPawns[color] = packed;
+        return new GameState(rows, newPawns, tileCount, placedIds, tileHash, pawnHash ^ pawnKey(color, pawns[color])
+                ^ pawnKey(color, packed), hands, pile, pileTop, order, dragon);
+    }
+
+    /**
+     * Get a state with the hand of a color set
+     * @param color color of the player
+     * @param ids ids of the tiles in the hand, at most 3
+     * @return the new state
+     */
+    public GameState withHand(int color, int... ids) {
+        if (ids.length > 3) {
+            throw new IllegalArgumentException("A hand holds at most 3 tiles");
+        }
+        int[][] newHands = hands.clone();
+        newHands[color] = ids.clone();
+        return new GameState(rows, pawns, tileCount, placedIds, tileHash, pawnHash, newHands, pile, pileTop, order,
+                dragon);
+    }
+
+    /**
+     * Get a state with the draw pile set
+     * @param ids ids of the tiles of the pile from top to bottom
+     * @return the new state
+     */
+    public GameState withPile(int... ids) {
+        return new GameState(rows, pawns, tileCount, placedIds, tileHash, pawnHash, hands, ids.clone(), 0, order,
+                dragon);
+    }
+
+    /**
+     * Get a state with the tile on top of the draw pile moved to the hand of a color
+     * @param color color of the player drawing
+     * @return the new state, sharing the pile with this one
+     */
+    public GameState draw(int color) {
+        if (getPileSize() == 0) {
+            throw new IllegalArgumentException("The draw pile is empty");
+        }
+        if (hands[color].length == 3) {
+            throw new IllegalArgumentException("The hand of this color is full");
+        }
+        int[][] newHands = hands.clone();
+        newHands[color] = Arrays.copyOf(hands[color], hands[color].length + 1);
+        newHands[color][hands[color].length] = pile[pileTop];
+        return new GameState(rows, pawns, tileCount, placedIds, tileHash, pawnHash, newHands, pile, pileTop + 1,
+                order, dragon);
+    }
+
+    /**
+     * Get a state with the turn order set
+     * @param colors colors still in the game in turn order, the color to play first
+     * @return the new state
+     */
+    public GameState withTurnOrder(int... colors) {
+        return new GameState(rows, pawns, tileCount, placedIds, tileHash, pawnHash, hands, pile, pileTop,
+                colors.clone(), dragon);
+    }
+
+    /**
+     * Get a state with the holder of the dragon tile set
+     * @param color color holding the dragon tile, -1 if none
+     * @return the new state
+     */
+    public GameState withDragon(int color) {
+        return new GameState(rows, pawns, tileCount, placedIds, tileHash, pawnHash, hands, pile, pileTop, order,
+                color);
+    }
+
+    /**
+     * Play a whole turn: place a tile in front of the pawn of a color and move every pawn facing it;
+     * pawns that leave the board stay at their position off board
+     * @param color color of the pawn placing the tile, which must be on board
+     * @param tileCode code of the tile, see Tile.getCode()
+     * @return the state after the turn
+     */
+    public GameState apply(int color, int tileCode) {
+        if (!hasPawnOnBoard(color)) {
+            throw new IllegalArgumentException("Pawn of this color is not on board");
+        }
+        int x = Board.getAdjacentX(pawns[color]);
+        int y = Board.getAdjacentY(pawns[color]);
+        GameState placed = withTile(tileCode, x, y);
+        int[] newPawns = pawns.clone();
+        long newPawnHash = pawnHash;
+        for (int c = 0; c < newPawns.length; c++) {
+            if (isPawnOnBoard(pawns[c]) && Board.getAdjacentX(pawns[c]) == x && Board.getAdjacentY(pawns[c]) == y) {
+                newPawns[c] = placed.endOfPath(pawns[c]);
+                newPawnHash ^= pawnKey(c, pawns[c]) ^ pawnKey(c, newPawns[c]);
+            }
+        }
+        return new GameState(placed.rows, newPawns, placed.tileCount, placed.placedIds, placed.tileHash, newPawnHash,
+                hands, pile, pileTop, order, dragon);
+    }
+
+    /**
+     * Follow the path of a pawn through the tiles in front of it
+     * @param packed packed position of the pawn
+     * @return packed position at the end of the path; the same position if no tile is in front of it
+     */
+    public int endOfPath(int packed) {
+        int x = Token.packedX(packed);
+        int y = Token.packedY(packed);
+        int index = Token.packedIndex(packed);
+        while (true) {
+            int nextX = x + DX[index];
+            int nextY = y + DY[index];
+            int code = getTileCode(nextX, nextY);
+            // reached the end of path
+            if (code == -1) {
+                return Token.pack(x, y, index);
+            }
+            index = Tile.getPathEnd(code, Tile.NEIGHBOR_INDEX[index]);
+            x = nextX;
+            y = nextY;
+        }
+    }
+
+    /**
+     * Create a mutable board with the tiles of this state and its pawns set for makeMove
+     * @return a new board without SPlayers
+     */
+    public Board toBoard() {
+        Board b = new Board();
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                if (rows[x][y] != -1) {
+                    b.placeTile(new Tile(rows[x][y] / 4, rows[x][y] % 4), x, y);
+                }
+            }
+        }
+        for (int color = 0; color < pawns.length; color++) {
+            b.setPawn(color, pawns[color]);
+        }
+        return b;
+    }
+
+    /**
+     * Get the code of the tile on a location
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @return tile code; -1 if the location is empty or not on board
+     */
+    public int getTileCode(int x, int y) {
+        if (x < 0 || y < 0 || x >= SIZE || y >= SIZE) {
+            return -1;
+        }
+        return rows[x][y];
+    }
+
+    public int getPawn(int color) {
+        return pawns[color];
+    }
+
+    public boolean hasPawnOnBoard(int color) {
+        return isPawnOnBoard(pawns[color]);
+    }
+
+    /**
+     * Get the number of pawns that are not eliminated
+     * @return number of pawns on board
+     */
+    public int getPawnsOnBoard() {
+        int count = 0;
+        for (int packed : pawns) {
+            if (isPawnOnBoard(packed)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    /**
+     * Get the hand of a color
+     * @param color color of the player
+     * @return a new list of the tiles in the hand, unrotated
+     */
+    public List<Tile> getHand(int color) {
+        return tiles(hands[color], 0);
+    }
+
+    public int getHandSize(int color) {
+        return hands[color].length;
+    }
+
+    /**
+     * Get the draw pile
+     * @return a new list of the tiles of the pile from top to bottom, unrotated
+     */
+    public List<Tile> getPile() {
+        return tiles(pile, pileTop);
+    }
+
+    public int getPileSize() {
+        return pile.length - pileTop;
+    }
+
+    /**
+     * Get the turn order
+     * @return a copy of the colors still in the game in turn order, the color to play first
+     */
+    public int[] getTurnOrder() {
+        return order.clone();
+    }
+
+    /**
+     * @return the color to play; -1 if no player is in the game
+     */
+    public int getColorToPlay() {
+        return order.length == 0 ? -1 : order[0];
+    }
+
+    /**
+     * @return the color holding the dragon tile; -1 if none
+     */
+    public int getDragonHolder() {
+        return dragon;
+    }
+
+    public boolean isFull() {
+        return tileCount == Tile.NUM_TILES;
+    }
+
+    public boolean containsTile(int id) {
+        return (placedIds & 1L << id) != 0;
+    }
+
+    /**
+     * Get the hash of this state, equal to getTileHash() ^ getPawnHash() of a Board in the same position
+     * @return 64-bit hash
+     */
+    public long getHash() {
+        return tileHash ^ pawnHash;
+    }
+
+    private static List<Tile> tiles(int[] ids, int from) {
+        List<Tile> tiles = new ArrayList<>(ids.length - from);
+        for (int i = from; i < ids.length; i++) {
+            tiles.add(new Tile(ids[i], 0));
+        }
+        return tiles;
+    }
+
+    private static boolean isPawnOnBoard(int packed) {
+        return packed >= 0 && !Token.isOffBoard(packed);
+    }
+
+    private static long pawnKey(int color, int packed) {
+        return isPawnOnBoard(packed) ? Board.tokenKey(color, packed) : 0;
+    }
+}
@@ -139,7 +139,7 @@ public class HPlayer extends APlayer {
                 Board tempBoard = parser.boardParser.fromXML(boardXML);
                 tempBoard.placeTile(copy, location[0], location[1]);
                 for (SPlayer sp : tempBoard.getSPlayerList()) {
-                    sp.updateToken(tempBoard.simulateMove(sp.getToken()));
+                    tempBoard.updateToken(sp, tempBoard.simulateMove(sp.getToken()));
                 }
                 generateBoardImage(parser.boardParser.buildXML(tempBoard), i, j);
                 System.out.println("HPlayer: play-turn board image (" + i + ", " + j + ") generated");
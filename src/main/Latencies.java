@@ -0,0 +1,89 @@
+package tsuro;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Latency histograms of the phases of a game, by phase name
+ *
+ * A Server records the validation of every turn, the update of the board and the playTurn call of every
+ * player, named PLAY_TURN followed by the color and the name of the player, see playTurn(); remote players
+ * add the time spent encoding
+ * and decoding messages. A Tournament adds the latencies of all its games together.
+ */
+public class Latencies {
+
+    public static final String PLAY_TURN = "play-turn ";
+    public static final String LEGAL_PLAY = "legal-play";
+    public static final String CHECK_HAND = "check-hand";
+    public static final String BOARD_UPDATE = "board-update";
+    public static final String ENCODE = "encode";
+    public static final String DECODE = "decode";
+
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+
+    /**
+     * Get the name of the playTurn phase of a player, e.g. "play-turn 2 Alice"; the color tells apart
+     * players of the same name
+     * @param color color of the player
+     * @param name name of the player
+     * @return the phase name
+     */
+    public static String playTurn(int color, String name) {
+        return PLAY_TURN + color + " " + name;
+    }
+
+    /**
+     * Get the name of the player of a phase named by playTurn()
+     * @param phase the phase name
+     * @return the name of the player
+     */
+    public static String playerOf(String phase) {
+        return phase.substring(phase.indexOf(' ', PLAY_TURN.length()) + 1);
+    }
+
+    /**
+     * Get the histogram of a phase, creating an empty one if the phase has none yet
+     * @param phase name of the phase
+     * @return the histogram of the phase
+     */
+    public synchronized LatencyHistogram get(String phase) {
+        return histograms.computeIfAbsent(phase, p -> new LatencyHistogram());
+    }
+
+    /**
+     * Get the phases with at least one latency recorded
+     * @return phase names in the order they were first asked for
+     */
+    public synchronized List<String> getPhases() {
+        List<String> phases = new ArrayList<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                phases.add(entry.getKey());
+            }
+        }
+        return phases;
+    }
+
+    /**
+     * Add the latencies of every phase of another set of histograms to the phase of the same name
+     * @param other the histograms to add
+     */
+    public void add(Latencies other) {
+        for (String phase : other.getPhases()) {
+            get(phase).add(other.get(phase));
+        }
+    }
+
+    /**
+     * Print a summary of every phase to console
+     * @param prefix printed before every line
+     */
+    public void print(String prefix) {
+        for (String phase : getPhases()) {
+            System.out.println(prefix + phase + ": " + get(phase).summary());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package tsuro;
+
+/**
+ * Histogram of latencies in nanoseconds with logarithmic buckets
+ *
+ * Values below 8 get a bucket each; every power of two above is split into 8 buckets, so a percentile is
+ * off by at most 1/8 of its value. Values of 2^40 ns (about 18 minutes) and more share the last bucket.
+ * Counts are allocated on the first value and adding histograms only visits the buckets in use, so the
+ * few short histograms of a game are cheap to create and to add up. All methods are synchronized, which
+ * is cheap while only the thread playing a game records into its histograms.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int NUM_BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BITS) * SUB_BUCKETS;
+
+    private long[] counts;
+    // range of the buckets with a count
+    private int lowestBucket = NUM_BUCKETS;
+    private int highestBucket = -1;
+    private long count;
+    private long total;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * Record one latency
+     * @param nanos latency in nanoseconds; negative values count as 0
+     */
+    public synchronized void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        if (counts == null) {
+            counts = new long[NUM_BUCKETS];
+        }
+        int bucket = bucket(value);
+        counts[bucket]++;
+        lowestBucket = Math.min(lowestBucket, bucket);
+        highestBucket = Math.max(highestBucket, bucket);
+        count++;
+        total += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add every latency recorded by another histogram to this one
+     * @param other the histogram to add
+     */
+    public void add(LatencyHistogram other) {
+        long[] otherCounts;
+        int otherLowest;
+        int otherHighest;
+        long otherCount;
+        long otherTotal;
+        long otherMin;
+        long otherMax;
+        // copy first so that two histograms adding each other cannot deadlock
+        synchronized (other) {
+            if (other.counts == null) {
+                return;
+            }
+            otherLowest = other.lowestBucket;
+            otherHighest = other.highestBucket;
+            otherCounts = new long[otherHighest - otherLowest + 1];
+            System.arraycopy(other.counts, otherLowest, otherCounts, 0, otherCounts.length);
+            otherCount = other.count;
+            otherTotal = other.total;
+            otherMin = other.min;
+            otherMax = other.max;
+        }
+        synchronized (this) {
+            if (counts == null) {
+                counts = new long[NUM_BUCKETS];
+            }
+            for (int i = 0; i < otherCounts.length; i++) {
+                counts[otherLowest + i] += otherCounts[i];
+            }
+            lowestBucket = Math.min(lowestBucket, otherLowest);
+            highestBucket = Math.max(highestBucket, otherHighest);
+            count += otherCount;
+            total += otherTotal;
+            min = Math.min(min, otherMin);
+            max = Math.max(max, otherMax);
+        }
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    public synchronized double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * Get the latency that a share of the recorded latencies do not exceed
+     * @param percentile share between 0 and 100
+     * @return the highest latency of the bucket holding the percentile, at most the maximum; 0 if empty
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+        long seen = 0;
+        for (int i = lowestBucket; i <= highestBucket; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.max(min, Math.min(max, highestValue(i)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Summarize the histogram on one line, with latencies in microseconds
+     * @return count, mean, percentiles and maximum
+     */
+    public synchronized String summary() {
+        return String.format("count = %d, mean = %.1f us, p50 = %.1f us, p90 = %.1f us, p99 = %.1f us, "
+                + "p99.9 = %.1f us, max = %.1f us", count, getMean() / 1e3, getPercentile(50) / 1e3,
+                getPercentile(90) / 1e3, getPercentile(99) / 1e3, getPercentile(99.9) / 1e3, max / 1e3);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return NUM_BUCKETS - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+    }
+
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        if (bucket == NUM_BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+        long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long lowest = (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+        long width = 1L << (exponent - SUB_BITS);
+        return lowest + width - 1;
+    }
+}
@@ -0,0 +1,112 @@
+package tsuro;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Every way a player can place a tile from its hand in front of its token, each classified as
+ * safe or eliminating; one object can be reused for any number of turns
+ */
+public class LegalMoves {
+
+    // tile code and hand index of each move, in hand order and then clockwise rotation order,
+    // one move per distinct placement of a tile; three tiles in hand, each with at most four rotations
+    private int[] codes = new int[12];
+    private int[] handIndexes = new int[12];
+    private boolean[] safe = new boolean[12];
+    private int size = 0;
+    private int safeCount = 0;
+
+    /**
+     * Classify all moves of a hand in a single pass over the board
+     * @param b the board before the tile placement
+     * @param packed packed position of the token of the player, see Token.pack()
+     * @param hand the tiles of the player
+     * @return this object, holding the moves of the given hand
+     */
+    public LegalMoves generate(Board b, int packed, List<Tile> hand) {
+        if (hand.size() * 4 > codes.length) {
+            codes = new int[hand.size() * 4];
+            handIndexes = new int[hand.size() * 4];
+            safe = new boolean[hand.size() * 4];
+        }
+        size = 0;
+        safeCount = 0;
+        for (int i = 0; i < hand.size(); i++) {
+            Tile tile = hand.get(i);
+            // further rotations of a symmetric tile repeat the same paths
+            for (int rotation = 0; rotation < Tile.getDistinctRotations(tile.getId()); rotation++) {
+                int code = tile.getId() * 4 + (tile.getRotation() + rotation) % 4;
+                codes[size] = code;
+                handIndexes[size] = i;
+                safe[size] = !Token.isOffBoard(b.simulateMove(packed, code));
+                if (safe[size]) {
+                    safeCount++;
+                }
+                size++;
+            }
+        }
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCode(int move) {
+        return codes[move];
+    }
+
+    public int getHandIndex(int move) {
+        return handIndexes[move];
+    }
+
+    public boolean isSafe(int move) {
+        return safe[move];
+    }
+
+    /**
+     * Check if a move is legal: a move is legal if it is safe or if every move is eliminating
+     * @param move index of the move
+     * @return true if the move is legal
+     */
+    public boolean isLegal(int move) {
+        return safe[move] || safeCount == 0;
+    }
+
+    /**
+     * Check if placing a tile, in its current rotation, is legal
+     * @param tile a (possibly rotated version of) one of the tiles in hand
+     * @return true if the tile is one of the generated moves and the move is legal
+     */
+    public boolean isLegal(Tile tile) {
+        for (int move = 0; move < size; move++) {
+            if (Tile.isSamePaths(codes[move], tile.getCode())) {
+                return isLegal(move);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of moves that do not eliminate the player
+     * @return number of safe moves
+     */
+    public int getSafeCount() {
+        return safeCount;
+    }
+
+    /**
+     * Get a tile for every legal move
+     * @return a list of suitably rotated tiles
+     */
+    public List<Tile> getLegalTiles() {
+        List<Tile> legalTiles = new ArrayList<>();
+        for (int move = 0; move < size; move++) {
+            if (isLegal(move)) {
+                legalTiles.add(new Tile(codes[move] / 4, codes[move] % 4));
+            }
+        }
+        return legalTiles;
+    }
+}
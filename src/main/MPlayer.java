@@ -1,5 +1,4 @@
 package tsuro;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
@@ -8,6 +7,10 @@ public abstract class MPlayer extends APlayer {
     private String name;
     private int color;
     private List<Integer> colors;
+    // reused for every turn
+    private final LegalMoves legalMoves = new LegalMoves();
+    // every random choice of the player, e.g. its starting position
+    private Random random = new Random();
 
     public MPlayer(String name) {
         this.name = name;
@@ -17,6 +20,26 @@ public abstract class MPlayer extends APlayer {
         return name;
     }
 
+    /**
+     * Make the random choices of the player from a given source; seed it to make the player reproducible
+     * @param random source of randomness of this player only
+     */
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+    protected Random getRandom() {
+        return random;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public List<Integer> getColors() {
+        return colors;
+    }
+
     public void initialize (int color, List<Integer> colors) {
         checkState("initialize");
         validColorAndColors(color, colors);
@@ -52,7 +75,7 @@ public abstract class MPlayer extends APlayer {
      * @return a list of new position as [x-coordinate, y-coordinate, index on tile]
      */
     private int[] findStartPosition() {
-        Random rand = new Random();
+        Random rand = random;
         int x, y, indexOnTile;
         // choose a random number in {0, 1, 2, 3}
         int side = rand.nextInt(4);
@@ -93,19 +116,7 @@ public abstract class MPlayer extends APlayer {
     /**
      * Find all legal moves based on current board and MPlayer's hand
      */
-    public List<Tile> findLegalMoves(Board b, List<Tile> hand) throws Exception {
-        List<Tile> legalMoves = new ArrayList<>();
-        for (Tile t : hand) {
-            Tile copy = t.copyTile();
-            for (int i = 0; i < 4; i++) {
-                SPlayer tempPlayer = new SPlayer(b.getSPlayer(color).getToken(), hand);
-                tempPlayer.linkPlayer(this);
-                if (Server.getInstance().legalPlay(tempPlayer, b, copy)) {
-                    legalMoves.add(copy.copyTile());
-                }
-                copy.rotateTile();
-            }
-        }
-        return legalMoves;
+    public List<Tile> findLegalMoves(Board b, List<Tile> hand) {
+        return legalMoves.generate(b, b.findMyToken(color).pack(), hand).getLegalTiles();
     }
 }
@@ -0,0 +1,273 @@
+package tsuro;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Machine player looking several turns ahead with expectimax search
+ *
+ * Every turn after the first is a chance node over the unseen tiles, i.e. the tiles that are neither on
+ * board nor in this player's hand, followed by a choice of rotation: this player picks the rotation with
+ * the highest value, while other players are assumed to pick any rotation that keeps them on board with
+ * equal probability. A position is worth 0 once this player is eliminated, and 1 / number of remaining
+ * players while it is still on board.
+ *
+ * The search deepens one turn at a time until the turn budget runs out and plays the best move of the
+ * deepest completed search. Values of positions are kept across turns in a bounded transposition table.
+ */
+public class MPlayerExpectimax extends MPlayer {
+
+    public static final long DEFAULT_BUDGET_MILLIS = 50;
+    public static final int DEFAULT_TABLE_SIZE = 1 << 16;
+    private static final int MAX_DEPTH = 16;
+
+    private final long budgetNanos;
+    private final Map<Long, Entry> table;
+    private final LegalMoves legalMoves = new LegalMoves();
+    private int lastDepth;
+
+    public MPlayerExpectimax(String name) {
+        this(name, DEFAULT_BUDGET_MILLIS, DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * @param name name of the player
+     * @param budgetMillis time spent on searching for every turn; a one turn search always completes
+     * @param tableSize maximum number of positions in the transposition table
+     */
+    public MPlayerExpectimax(String name, long budgetMillis, int tableSize) {
+        super(name);
+        if (budgetMillis < 0 || tableSize < 0) {
+            throw new IllegalArgumentException("Invalid turn budget or table size");
+        }
+        this.budgetNanos = budgetMillis * 1000000;
+        this.table = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > tableSize;
+            }
+        };
+    }
+
+    /**
+     * Get the number of turns looked ahead by the last search
+     * @return depth of the deepest completed search of the last turn
+     */
+    public int getLastDepth() {
+        return lastDepth;
+    }
+
+    public Tile playTurn(Board b, List<Tile> hand, int tilesLeft) throws Exception {
+        checkState("play-turn");
+        long deadline = System.nanoTime() + budgetNanos;
+        int myPacked = b.findMyToken(getColor()).pack();
+        legalMoves.generate(b, myPacked, hand);
+
+        // one candidate per distinct legal placement
+        List<Integer> candidates = new ArrayList<>();
+        for (int move = 0; move < legalMoves.size(); move++) {
+            int code = legalMoves.getCode(move);
+            if (legalMoves.isLegal(move) && !candidates.contains(Tile.getOrientation(code))) {
+                candidates.add(Tile.getOrientation(code));
+            }
+        }
+        int best = candidates.get(0);
+        lastDepth = 0;
+        if (candidates.size() == 1) {
+            return new Tile(best / 4, best % 4);
+        }
+
+        long unseen = (1L << Tile.NUM_TILES) - 1;
+        for (int id = 0; id < Tile.NUM_TILES; id++) {
+            if (b.containsTile(new Tile(id, 0))) {
+                unseen &= ~(1L << id);
+            }
+        }
+        for (Tile t : hand) {
+            unseen &= ~(1L << t.getId());
+        }
+
+        List<Integer> order = new ArrayList<>();
+        List<Integer> colors = getColors();
+        int me = colors.indexOf(getColor());
+        for (int i = 0; i < colors.size(); i++) {
+            int color = colors.get((me + i) % colors.size());
+            for (SPlayer sp : b.getSPlayerList()) {
+                // eliminated players may still be on the list of the board
+                if (sp.getToken().getColor() == color && !sp.getToken().isOffBoard()) {
+                    order.add(color);
+                }
+            }
+        }
+
+        for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+            Search search = new Search(b, order, unseen, depth > 1 ? deadline : Long.MAX_VALUE);
+            int bestOfDepth = candidates.get(0);
+            double bestValue = -1;
+            for (int code : candidates) {
+                double value = search.place(0, depth, code);
+                if (search.outOfTime) {
+                    break;
+                }
+                if (value > bestValue) {
+                    bestValue = value;
+                    bestOfDepth = code;
+                }
+            }
+            // an unfinished search leaves the best move of the last depth completed
+            if (search.outOfTime) {
+                break;
+            }
+            best = bestOfDepth;
+            lastDepth = depth;
+            if (search.exhausted) {
+                break;
+            }
+        }
+        return new Tile(best / 4, best % 4);
+    }
+
+    private static final class Entry {
+        final int depth;
+        final double value;
+        // true if no leaf below was cut off by the depth, so the value holds for any depth
+        final boolean exact;
+
+        Entry(int depth, double value, boolean exact) {
+            this.depth = depth;
+            this.value = value;
+            this.exact = exact;
+        }
+    }
+
+    /**
+     * A search to a fixed depth, making and unmaking moves on a private copy of the board
+     */
+    private final class Search {
+        private final Board board;
+        // colors of the players on board in turn order, this player first
+        private final int[] order;
+        private long unseen;
+        private final long deadline;
+        // true if no leaf was cut off by the depth, so deeper searches give the same result
+        boolean exhausted = true;
+        // set once the deadline has passed; every value returned after that is meaningless
+        boolean outOfTime;
+
+        Search(Board b, List<Integer> order, long unseen, long deadline) {
+            this.board = b.copyTiles();
+            this.order = new int[order.size()];
+            for (int i = 0; i < order.size(); i++) {
+                this.order[i] = order.get(i);
+                board.setPawn(this.order[i], b.findMyToken(this.order[i]).pack());
+            }
+            this.unseen = unseen;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Value of the position where the pawn of a turn is about to place one of the unseen tiles
+         */
+        private double chance(int turn, int depth) {
+            if (outOfTime || System.nanoTime() > deadline) {
+                outOfTime = true;
+                return 0;
+            }
+            long key = key(turn);
+            Entry entry = table.get(key);
+            if (entry != null && (entry.exact || entry.depth >= depth)) {
+                exhausted &= entry.exact;
+                return entry.value;
+            }
+
+            boolean exhaustedBefore = exhausted;
+            exhausted = true;
+            double total = 0;
+            int count = 0;
+            for (long bits = unseen; bits != 0 && !outOfTime; bits &= bits - 1) {
+                int id = Long.numberOfTrailingZeros(bits);
+                total += choose(turn, depth, id);
+                count++;
+            }
+            if (outOfTime) {
+                // the value is unfinished, so it must not get into the table
+                return 0;
+            }
+            double value = count == 0 ? evaluate() : total / count;
+            table.put(key, new Entry(depth, value, exhausted));
+            exhausted &= exhaustedBefore;
+            return value;
+        }
+
+        /**
+         * Value of placing a tile for the pawn of a turn: the best rotation for this player,
+         * the average of the plausible rotations for other players
+         */
+        private double choose(int turn, int depth, int id) {
+            boolean anySafe = false;
+            for (int rotation = 0; rotation < 4 && !anySafe; rotation++) {
+                anySafe = !Token.isOffBoard(board.simulateMove(board.getPawn(order[turn]), id * 4 + rotation));
+            }
+            double best = -1;
+            double total = 0;
+            int count = 0;
+            for (int rotation = 0; rotation < Tile.getDistinctRotations(id) && !outOfTime; rotation++) {
+                int code = id * 4 + rotation;
+                // other players keep themselves on board if they can
+                if (turn != 0 && anySafe && Token.isOffBoard(board.simulateMove(board.getPawn(order[turn]), code))) {
+                    continue;
+                }
+                double value = place(turn, depth, code);
+                best = Math.max(best, value);
+                total += value;
+                count++;
+            }
+            return turn == 0 || count == 0 ? best : total / count;
+        }
+
+        /**
+         * Value of the position after the pawn of a turn places a tile; the board is left unchanged
+         */
+        double place(int turn, int depth, int code) {
+            board.makeMove(order[turn], code);
+            long unseenBefore = unseen;
+            unseen &= ~(1L << code / 4);
+
+            double value;
+            if (!board.hasPawnOnBoard(order[0])) {
+                value = 0;
+            } else if (board.getPawnsOnBoard() == 1) {
+                value = 1;
+            } else if (unseen == 0 || board.isFull()) {
+                value = evaluate();
+            } else if (depth == 1) {
+                exhausted = false;
+                value = evaluate();
+            } else {
+                int next = turn;
+                do {
+                    next = (next + 1) % order.length;
+                } while (!board.hasPawnOnBoard(order[next]));
+                value = chance(next, depth - 1);
+            }
+
+            board.unmakeMove();
+            unseen = unseenBefore;
+            return value;
+        }
+
+        private double evaluate() {
+            return board.hasPawnOnBoard(order[0]) ? 1.0 / board.getPawnsOnBoard() : 0;
+        }
+
+        /**
+         * Hash of the tiles, the pawns, the unseen tiles and the pawn to play
+         */
+        private long key(int turn) {
+            long mixed = (unseen ^ (long) order[turn] << 48) * 0x9E3779B97F4A7C15L;
+            return board.getTileHash() ^ board.getPawnHash() ^ mixed ^ mixed >>> 29;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package tsuro;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Machine player scoring every legal move by random playouts
+ *
+ * Each playout places the move, then lets every remaining player in turn order place a random unseen
+ * tile, preferring a rotation that keeps it on board, until this player is eliminated or is the last one
+ * standing or the tiles run out. A move scores the share of its playouts this player survives.
+ * Playouts run on several workers, each with its own copy of the board that every playout makes its moves on
+ * and then unmakes, until the turn budget runs out.
+ * Hands of other players are unknown, so every player draws from all tiles that are not on board.
+ * Every worker draws from a source seeded by the player's own, but how many playouts fit in the budget
+ * depends on timing, so the moves chosen are not reproducible even with a seeded player.
+ */
+public class MPlayerMonteCarlo extends MPlayer {
+
+    public static final long DEFAULT_BUDGET_MILLIS = 50;
+
+    private final long budgetNanos;
+    private final int numWorkers;
+    private final Executor executor;
+    private final LegalMoves legalMoves = new LegalMoves();
+
+    public MPlayerMonteCarlo(String name) {
+        this(name, DEFAULT_BUDGET_MILLIS, ForkJoinPool.getCommonPoolParallelism(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param name name of the player
+     * @param budgetMillis time spent on playouts for every turn
+     * @param numWorkers number of workers running playouts at the same time
+     * @param executor runs the workers
+     */
+    public MPlayerMonteCarlo(String name, long budgetMillis, int numWorkers, Executor executor) {
+        super(name);
+        if (budgetMillis < 0 || numWorkers < 1) {
+            throw new IllegalArgumentException("Invalid turn budget or number of workers");
+        }
+        this.budgetNanos = budgetMillis * 1000000;
+        this.numWorkers = numWorkers;
+        this.executor = executor;
+    }
+
+    public Tile playTurn(Board b, List<Tile> hand, int tilesLeft) throws Exception {
+        checkState("play-turn");
+        long deadline = System.nanoTime() + budgetNanos;
+        int myPacked = b.findMyToken(getColor()).pack();
+        legalMoves.generate(b, myPacked, hand);
+
+        // only safe moves are worth a playout; if every move eliminates, any of them will do
+        List<Integer> candidates = new ArrayList<>();
+        for (int move = 0; move < legalMoves.size(); move++) {
+            if (legalMoves.isLegal(move)) {
+                candidates.add(legalMoves.getCode(move));
+            }
+        }
+        if (legalMoves.getSafeCount() == 0 || candidates.size() == 1) {
+            return toTile(candidates.get(0));
+        }
+
+        Playouts playouts = new Playouts(b, candidates, colorsInTurnOrder(b));
+        List<CompletableFuture<long[]>> workers = new ArrayList<>();
+        for (int i = 0; i < numWorkers; i++) {
+            Random rand = new Random(getRandom().nextLong());
+            workers.add(CompletableFuture.supplyAsync(() -> playouts.run(deadline, rand), executor));
+        }
+        long[] survived = new long[candidates.size()];
+        long[] played = new long[candidates.size()];
+        for (CompletableFuture<long[]> worker : workers) {
+            long[] result = worker.get();
+            for (int move = 0; move < candidates.size(); move++) {
+                survived[move] += result[move * 2];
+                played[move] += result[move * 2 + 1];
+            }
+        }
+
+        int best = 0;
+        double bestScore = -1;
+        for (int move = 0; move < candidates.size(); move++) {
+            double score = played[move] == 0 ? 0 : (double) survived[move] / played[move];
+            if (score > bestScore) {
+                best = move;
+                bestScore = score;
+            }
+        }
+        return toTile(candidates.get(best));
+    }
+
+    private static Tile toTile(int code) {
+        return new Tile(code / 4, code % 4);
+    }
+
+    /**
+     * Find the colors of the players on board, in turn order starting with this player
+     */
+    private int[] colorsInTurnOrder(Board b) {
+        List<Integer> colors = getColors();
+        int me = colors.indexOf(getColor());
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < colors.size(); i++) {
+            int color = colors.get((me + i) % colors.size());
+            for (SPlayer sp : b.getSPlayerList()) {
+                // eliminated players may still be on the list of the board
+                if (sp.getToken().getColor() == color && !sp.getToken().isOffBoard()) {
+                    order.add(color);
+                }
+            }
+        }
+        int[] result = new int[order.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = order.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Random playouts of a set of candidate moves from one position; run can be called from several threads
+     */
+    static class Playouts {
+        private final Board board;
+        private final List<Integer> candidates;
+        // colors of the players on board in turn order, this player first
+        private final int[] order;
+        private final int[] unseen;
+
+        Playouts(Board board, List<Integer> candidates, int[] order) {
+            this.board = board;
+            this.candidates = candidates;
+            this.order = order;
+            int count = 0;
+            int[] ids = new int[Tile.NUM_TILES];
+            for (int id = 0; id < Tile.NUM_TILES; id++) {
+                if (!board.containsTile(new Tile(id, 0))) {
+                    ids[count++] = id;
+                }
+            }
+            this.unseen = new int[count];
+            System.arraycopy(ids, 0, unseen, 0, count);
+        }
+
+        /**
+         * Play out the candidate moves in turn until the deadline, at least once each
+         * @param deadline System.nanoTime() to stop at
+         * @param rand source of randomness of this call only
+         * @return survived and played counts of every candidate, interleaved
+         */
+        long[] run(long deadline, Random rand) {
+            // playTurn waits for every worker, so the board of the game does not change while it is copied
+            Board copy = board.copyTiles();
+            for (int color : order) {
+                copy.setPawn(color, board.findMyToken(color).pack());
+            }
+            long[] result = new long[candidates.size() * 2];
+            int[] pool = new int[unseen.length];
+            do {
+                for (int move = 0; move < candidates.size(); move++) {
+                    if (playout(copy, candidates.get(move), pool, rand)) {
+                        result[move * 2]++;
+                    }
+                    result[move * 2 + 1]++;
+                }
+            } while (System.nanoTime() < deadline);
+            return result;
+        }
+
+        /**
+         * Play a single random game after a candidate move, leaving the board as it was
+         * @return true if this player is still on board at the end of the playout
+         */
+        private boolean playout(Board b, int code, int[] pool, Random rand) {
+            System.arraycopy(unseen, 0, pool, 0, unseen.length);
+            int poolSize = unseen.length;
+            for (int i = 0; i < poolSize; i++) {
+                if (pool[i] == code / 4) {
+                    pool[i] = pool[--poolSize];
+                    break;
+                }
+            }
+            int me = order[0];
+            int numMoves = 0;
+            int turn = 0;
+            int tileCode = code;
+            while (true) {
+                b.makeMove(order[turn], tileCode);
+                numMoves++;
+                if (!b.hasPawnOnBoard(me) || b.getPawnsOnBoard() == 1 || poolSize == 0 || b.isFull()) {
+                    break;
+                }
+                do {
+                    turn = (turn + 1) % order.length;
+                } while (!b.hasPawnOnBoard(order[turn]));
+                int pick = rand.nextInt(poolSize);
+                int id = pool[pick];
+                pool[pick] = pool[--poolSize];
+                tileCode = pickRotation(b, b.getPawn(order[turn]), id, rand.nextInt(4));
+            }
+
+            boolean survived = b.hasPawnOnBoard(me);
+            for (int i = 0; i < numMoves; i++) {
+                b.unmakeMove();
+            }
+            return survived;
+        }
+
+        /**
+         * Choose the first rotation of a tile, from a given one, that keeps the pawn on board
+         * @return code of the chosen tile; the given rotation if every rotation eliminates the pawn
+         */
+        private static int pickRotation(Board b, int packed, int id, int rotation) {
+            for (int i = 0; i < 4; i++) {
+                int code = id * 4 + (rotation + i) % 4;
+                if (!Token.isOffBoard(b.simulateMove(packed, code))) {
+                    return code;
+                }
+            }
+            return id * 4 + rotation;
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package tsuro;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Counts every game continuation up to a given number of turns from a position, the way chess engines use perft
+ *
+ * At every turn the player to move plays each legal placement of the tiles in its hand, one per distinct
+ * rotation, then draws the top tile of the draw pile, even if it has just been eliminated, as Server.playATurn
+ * does. The hands of eliminated players then go to the bottom of the draw pile in turn order from the player
+ * to move, instead of being shuffled in, so that every continuation is deterministic, and there is no dragon
+ * tile: a player with an empty hand ends the game. A game also ends when the board is full or at most one
+ * player is left.
+ *
+ * countThroughServer counts the same tree with Server.legalPlay and Server.playATurn instead, as the oracle
+ * of these rules: both counts agree as long as the draw pile does not run out.
+ */
+public class Perft {
+
+    private static final int HAND_SIZE = 3;
+
+    private final Board board;
+    // colors of the players in turn order
+    private final int[] order;
+    // tile ids in the hand of every player, by turn index
+    private final int[][] hands;
+    private final int[] handSizes;
+    // tile ids of the draw pile from deck[head] (top) to deck[tail - 1] (bottom)
+    private final int[] deck;
+    private int head;
+    private int tail;
+
+    // state saved before the move of every ply
+    private int[][] savedHands = new int[0][];
+    private int[][] savedHandSizes = new int[0][];
+    private int[] savedHeads = new int[0];
+    private int[] savedTails = new int[0];
+
+    /**
+     * @param b board with the tiles of the position
+     * @param players players in turn order, with their tokens and hands
+     * @param drawPile the draw pile
+     */
+    public Perft(Board b, List<SPlayer> players, Deck drawPile) {
+        this.board = b.copyTiles();
+        this.order = new int[players.size()];
+        this.hands = new int[players.size()][HAND_SIZE];
+        this.handSizes = new int[players.size()];
+        for (int i = 0; i < players.size(); i++) {
+            SPlayer sp = players.get(i);
+            order[i] = sp.getToken().getColor();
+            board.setPawn(order[i], sp.getToken().pack());
+            for (Tile t : sp.getHand()) {
+                hands[i][handSizes[i]++] = t.getId();
+            }
+        }
+        // every tile can be returned to the bottom of the pile once after being drawn
+        this.deck = new int[Tile.NUM_TILES * 3];
+        for (Tile t : drawPile.getPile()) {
+            deck[tail++] = t.getId();
+        }
+    }
+
+    /**
+     * @param state position with the player to move first in its turn order
+     */
+    public Perft(GameState state) {
+        this.board = state.toBoard();
+        this.order = state.getTurnOrder();
+        this.hands = new int[order.length][HAND_SIZE];
+        this.handSizes = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            for (Tile t : state.getHand(order[i])) {
+                hands[i][handSizes[i]++] = t.getId();
+            }
+        }
+        this.deck = new int[Tile.NUM_TILES * 3];
+        for (Tile t : state.getPile()) {
+            deck[tail++] = t.getId();
+        }
+    }
+
+    private Perft(Perft other) {
+        this.board = other.board.copyTiles();
+        this.order = other.order.clone();
+        for (int color : order) {
+            board.setPawn(color, other.board.getPawn(color));
+        }
+        this.hands = new int[order.length][];
+        for (int i = 0; i < order.length; i++) {
+            hands[i] = other.hands[i].clone();
+        }
+        this.handSizes = other.handSizes.clone();
+        this.deck = other.deck.clone();
+        this.head = other.head;
+        this.tail = other.tail;
+    }
+
+    /**
+     * Count the continuations of exactly a given number of turns, with the first player of the list to move
+     * @param depth number of turns
+     * @return number of positions reached after depth turns
+     */
+    public long count(int depth) {
+        ensureStack(depth);
+        return count(0, depth);
+    }
+
+    /**
+     * Same as count(depth), with the subtrees of the moves of the first turn counted in parallel
+     * @param depth number of turns
+     * @param pool runs the subtrees
+     * @return number of positions reached after depth turns
+     */
+    public long countParallel(int depth, ForkJoinPool pool) {
+        if (depth <= 1 || isGameOver(0)) {
+            return count(depth);
+        }
+        int[] moves = new int[HAND_SIZE * 4];
+        int numMoves = generate(0, moves);
+        List<ForkJoinTask<Long>> tasks = new ArrayList<>();
+        for (int i = 0; i < numMoves; i++) {
+            int code = moves[i];
+            tasks.add(pool.submit(() -> {
+                Perft copy = new Perft(this);
+                copy.ensureStack(depth);
+                int next = copy.play(0, code, depth);
+                long nodes = next < 0 ? 0 : copy.count(next, depth - 1);
+                copy.undo(depth);
+                return nodes;
+            }));
+        }
+        long nodes = 0;
+        for (ForkJoinTask<Long> task : tasks) {
+            nodes += task.join();
+        }
+        return nodes;
+    }
+
+    private long count(int turn, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (isGameOver(turn)) {
+            return 0;
+        }
+        int[] moves = new int[HAND_SIZE * 4];
+        int numMoves = generate(turn, moves);
+        if (depth == 1) {
+            return numMoves;
+        }
+        long nodes = 0;
+        for (int i = 0; i < numMoves; i++) {
+            int next = play(turn, moves[i], depth);
+            if (next >= 0) {
+                nodes += count(next, depth - 1);
+            }
+            undo(depth);
+        }
+        return nodes;
+    }
+
+    private boolean isGameOver(int turn) {
+        return handSizes[turn] == 0 || board.getPawnsOnBoard() <= 1 || board.isFull();
+    }
+
+    /**
+     * Generate the legal moves of the player of a turn
+     * @param turn turn index of the player
+     * @param moves filled with the tile codes of the moves
+     * @return number of moves
+     */
+    private int generate(int turn, int[] moves) {
+        int packed = board.getPawn(order[turn]);
+        int numMoves = 0;
+        int numSafe = 0;
+        // safe moves first, then eliminating ones that are only legal if no move is safe
+        int[] eliminating = new int[HAND_SIZE * 4];
+        int numEliminating = 0;
+        for (int i = 0; i < handSizes[turn]; i++) {
+            int id = hands[turn][i];
+            for (int rotation = 0; rotation < Tile.getDistinctRotations(id); rotation++) {
+                int code = id * 4 + rotation;
+                if (Token.isOffBoard(board.simulateMove(packed, code))) {
+                    eliminating[numEliminating++] = code;
+                } else {
+                    moves[numMoves++] = code;
+                    numSafe++;
+                }
+            }
+        }
+        if (numSafe == 0) {
+            System.arraycopy(eliminating, 0, moves, 0, numEliminating);
+            numMoves = numEliminating;
+        }
+        return numMoves;
+    }
+
+    /**
+     * Play a move; undo(ply) reverts it
+     * @param turn turn index of the player to move
+     * @param code tile code of the move
+     * @param ply index of the saved state, the remaining depth
+     * @return turn index of the next player; -1 if the game is over
+     */
+    private int play(int turn, int code, int ply) {
+        for (int i = 0; i < order.length; i++) {
+            System.arraycopy(hands[i], 0, savedHands[ply], i * HAND_SIZE, HAND_SIZE);
+        }
+        System.arraycopy(handSizes, 0, savedHandSizes[ply], 0, handSizes.length);
+        savedHeads[ply] = head;
+        savedTails[ply] = tail;
+
+        // the hand keeps its order, as the hand of a SPlayer does
+        int id = code / 4;
+        for (int i = 0; i < handSizes[turn]; i++) {
+            if (hands[turn][i] == id) {
+                System.arraycopy(hands[turn], i + 1, hands[turn], i, --handSizes[turn] - i);
+                break;
+            }
+        }
+        int eliminated = board.makeMove(order[turn], code);
+        if (head < tail) {
+            hands[turn][handSizes[turn]++] = deck[head++];
+        }
+        for (int k = 0; k < order.length; k++) {
+            int i = (turn + k) % order.length;
+            if ((eliminated & 1 << order[i]) != 0) {
+                for (int j = 0; j < handSizes[i]; j++) {
+                    deck[tail++] = hands[i][j];
+                }
+                handSizes[i] = 0;
+            }
+        }
+        if (board.getPawnsOnBoard() <= 1 || board.isFull()) {
+            return -1;
+        }
+        int next = turn;
+        do {
+            next = (next + 1) % order.length;
+        } while (!board.hasPawnOnBoard(order[next]));
+        return next;
+    }
+
+    private void undo(int ply) {
+        board.unmakeMove();
+        for (int i = 0; i < order.length; i++) {
+            System.arraycopy(savedHands[ply], i * HAND_SIZE, hands[i], 0, HAND_SIZE);
+        }
+        System.arraycopy(savedHandSizes[ply], 0, handSizes, 0, handSizes.length);
+        head = savedHeads[ply];
+        tail = savedTails[ply];
+    }
+
+    private void ensureStack(int depth) {
+        if (savedHeads.length > depth) {
+            return;
+        }
+        savedHands = new int[depth + 1][order.length * HAND_SIZE];
+        savedHandSizes = new int[depth + 1][order.length];
+        savedHeads = new int[depth + 1];
+        savedTails = new int[depth + 1];
+    }
+
+    /**
+     * Count the continuations of exactly a given number of turns through Server.legalPlay and
+     * Server.playATurn, restoring the game with Server.setState at every node. Returned hands keep their
+     * order in the draw pile, as in count(depth). Much slower than count(depth); used to check it.
+     * @param state position with the player to move first in its turn order
+     * @param depth number of turns
+     * @return number of positions reached after depth turns
+     */
+    public static long countThroughServer(GameState state, int depth) throws Exception {
+        if (depth == 0) {
+            return 1;
+        }
+        Server server = toServer(state);
+        SPlayer current = server.inSPlayers.get(0);
+        if (current.getHand().isEmpty()) {
+            return 0;
+        }
+        List<Tile> moves = new ArrayList<>();
+        for (Tile t : current.getHand()) {
+            for (int rotation = 0; rotation < Tile.getDistinctRotations(t.getId()); rotation++) {
+                Tile move = new Tile(t.getId(), rotation);
+                if (server.legalPlay(current, server.board, move)) {
+                    moves.add(move);
+                }
+            }
+        }
+        if (depth == 1) {
+            return moves.size();
+        }
+        long nodes = 0;
+        for (Tile move : moves) {
+            Server next = toServer(state);
+            // as Server.playGame does before every turn
+            next.inSPlayers.get(0).deal(move);
+            next.playATurn(move);
+            if (!next.isGameOver()) {
+                nodes += countThroughServer(GameState.of(next), depth - 1);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Set up a game in a position, with a draw pile whose shuffles keep the order of the tiles
+     */
+    private static Server toServer(GameState state) {
+        Board b = state.toBoard();
+        List<SPlayer> inSPlayers = new ArrayList<>();
+        for (int color : state.getTurnOrder()) {
+            SPlayer sp = new SPlayer(Token.fromPacked(color, state.getPawn(color)), state.getHand(color));
+            b.addSPlayer(sp);
+            inSPlayers.add(sp);
+        }
+        Server server = new Server();
+        server.setState(b, inSPlayers, new ArrayList<>(), new ArrayList<>(), new Deck(state.getPile(), new InOrder()));
+        for (SPlayer sp : inSPlayers) {
+            if (sp.getToken().getColor() == state.getDragonHolder()) {
+                server.dragonHolder = sp;
+            }
+        }
+        return server;
+    }
+
+    /**
+     * Random source of a Fisher-Yates shuffle that leaves every tile where it is
+     */
+    private static final class InOrder extends Random {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int nextInt(int bound) {
+            return bound - 1;
+        }
+    }
+
+    /**
+     * Create the position at the start of a game: players on the starting positions of startingPawn(),
+     * each with the first three tiles of an unshuffled deck in turn
+     * @param numPlayers number of players, 2 to 8
+     * @return perft of the starting position
+     */
+    public static Perft startingPosition(int numPlayers) {
+        return new Perft(startingState(numPlayers));
+    }
+
+    /**
+     * Get the position of startingPosition(numPlayers)
+     * @param numPlayers number of players, 2 to 8
+     * @return state of the starting position
+     */
+    public static GameState startingState(int numPlayers) {
+        Deck deck = new Deck();
+        GameState state = GameState.EMPTY;
+        int[] order = new int[numPlayers];
+        for (int color = 0; color < numPlayers; color++) {
+            order[color] = color;
+            state = state.withPawn(color, startingPawn(color, numPlayers));
+        }
+        state = state.withPile(ids(deck.getPile())).withTurnOrder(order);
+        for (int color = 0; color < numPlayers; color++) {
+            for (int i = 0; i < HAND_SIZE; i++) {
+                state = state.draw(color);
+            }
+        }
+        return state;
+    }
+
+    private static int[] ids(List<Tile> tiles) {
+        int[] ids = new int[tiles.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = tiles.get(i).getId();
+        }
+        return ids;
+    }
+
+    /**
+     * Get the starting position of a player, spreading the players evenly along the 48 edge ports clockwise
+     * @param color color of the player, numbered from 0 in turn order
+     * @param numPlayers number of players, 2 to 8
+     * @return packed starting position
+     */
+    static int startingPawn(int color, int numPlayers) {
+        int port = color * 48 / numPlayers;
+        int i = port % 12 / 2;
+        int index = port % 2;
+        switch (port / 12) {
+            case 0: return Token.pack(i, -1, index + 4);
+            case 1: return Token.pack(6, i, index + 6);
+            case 2: return Token.pack(5 - i, 6, 1 - index);
+            default: return Token.pack(-1, 5 - i, 3 - index);
+        }
+    }
+
+    // CML arguments:
+    // 0: Number_of_Players,
+    // 1: Depth,
+    // 2: Number_of_Threads (optional, default number of cores)
+    public static void main(String[] args) {
+        int numPlayers = Integer.parseInt(args[0]);
+        int depth = Integer.parseInt(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Perft perft = startingPosition(numPlayers);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        for (int d = 1; d <= depth; d++) {
+            long start = System.nanoTime();
+            long nodes = perft.count(d);
+            double serial = (System.nanoTime() - start) / 1e9;
+            start = System.nanoTime();
+            long parallelNodes = perft.countParallel(d, pool);
+            double parallel = (System.nanoTime() - start) / 1e9;
+            if (parallelNodes != nodes) {
+                System.err.println("Perft: parallel count " + parallelNodes + " differs from " + nodes);
+            }
+            System.out.printf("Perft: depth %d, %d nodes, %.3f s (%.0f nodes/s), %d threads %.3f s (%.0f nodes/s)%n",
+                    d, nodes, serial, nodes / serial, threads, parallel, parallelNodes / parallel);
+        }
+        pool.shutdown();
+    }
+}
@@ -51,7 +51,7 @@ public class PlayATurnAdapter {
             // ********************
             // Now call play a turn
             // ********************
-            Server server = Server.getInstance();
+            Server server = new Server();
             server.setState(board, inSPlayer, outSPlayer, new ArrayList<>(), deck);
             server.giveDragon(dragonOwner);
             List<SPlayer> winners = server.playATurn(tileToPlay);
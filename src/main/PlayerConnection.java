@@ -0,0 +1,38 @@
+package tsuro;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Connection to a remote player that answers every message with exactly one message of the same kind:
+ * a line answers a line, and a frame answers a frame, see BinaryParser
+ */
+public interface PlayerConnection {
+
+    /**
+     * Send a message and wait for its answer without blocking the caller
+     * @param message one line of XML, without the line break
+     * @return the answer, without the line break; completed exceptionally if the connection fails or closes,
+     *         or if the answer to an earlier message is still expected
+     */
+    CompletableFuture<String> request(String message);
+
+    /**
+     * Send a frame, a payload after its 4 byte length, and wait for the frame answering it without
+     * blocking the caller
+     * @param payload the payload of the frame
+     * @return the payload of the answer; fails like request(String), and if the answer is too long
+     */
+    CompletableFuture<byte[]> requestFrame(byte[] payload);
+
+    /**
+     * Fail every later request not answered within a deadline with a TimeoutException, and close the
+     * connection then, as a late answer would otherwise be taken for the answer to the next message
+     * @param millis deadline in milliseconds; 0 for none
+     */
+    void setTimeout(long millis);
+
+    /**
+     * Close the connection; requests still waiting for an answer fail
+     */
+    void close();
+}
@@ -0,0 +1,23 @@
+package tsuro;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Listens on a port for remote players and hands out their connections in the order they connect
+ */
+public interface PlayerListener extends AutoCloseable {
+
+    int getPort() throws IOException;
+
+    /**
+     * Claim the next connection of a client
+     * @return future of the connection; fails if the listener closes first
+     */
+    CompletableFuture<PlayerConnection> accept();
+
+    /**
+     * Stop listening; claims still waiting for a connection fail
+     */
+    void close();
+}
@@ -0,0 +1,295 @@
+package tsuro;
+
+/**
+ * Connectivity of the ports of all tiles placed on a board
+ *
+ * Every port of a placed tile belongs to a chain of paths connected through adjacent tiles. Each chain
+ * has two open ends, which are ports facing an empty location or the edge of the board, and a token
+ * that enters a chain always travels to one of them. Chains are kept in a union-find structure where
+ * each port also stores whether entering its tile from that port travels towards the first or the
+ * second end of its chain, so the end of any path is found without tracing it.
+ *
+ * Finds are not path-compressed so that every placement can be undone exactly from a log;
+ * union by size keeps finds within a few steps on a 6 x 6 board.
+ */
+class PortGraph {
+
+    private static final int SIZE = 6;
+    private static final int PORTS = SIZE * SIZE * 8;
+    private static final int[] DX = new int[] {0, 0, 1, 1, 0, 0, -1, -1};
+    private static final int[] DY = new int[] {-1, -1, 0, 0, 1, 1, 0, 0};
+
+    // union-find over port ids (x * 6 + y) * 8 + index on tile
+    private final int[] parent = new int[PORTS];
+    // 1 if the direction of a port is opposite to the direction of its parent
+    private final int[] flip = new int[PORTS];
+    // the following are only meaningful for roots
+    private final int[] size = new int[PORTS];
+    // entering a tile at a port with direction 0 travels towards endB, otherwise towards endA
+    private final int[] endA = new int[PORTS];
+    private final int[] endB = new int[PORTS];
+
+    private final Tile[] tiles = new Tile[SIZE * SIZE];
+    // locations in the order tiles were added, with the log length before each of them
+    private final int[] order = new int[SIZE * SIZE];
+    private final int[] marks = new int[SIZE * SIZE];
+    private int placed = 0;
+
+    // undo log of (array << 16 | port, old value) pairs
+    private int[] log = new int[256];
+    private int logSize = 0;
+
+    PortGraph() {
+    }
+
+    /**
+     * Copy the connectivity of another graph, including the log that undoes its placements
+     * @param other the graph to copy
+     */
+    PortGraph(PortGraph other) {
+        System.arraycopy(other.parent, 0, parent, 0, PORTS);
+        System.arraycopy(other.flip, 0, flip, 0, PORTS);
+        System.arraycopy(other.size, 0, size, 0, PORTS);
+        System.arraycopy(other.endA, 0, endA, 0, PORTS);
+        System.arraycopy(other.endB, 0, endB, 0, PORTS);
+        System.arraycopy(other.tiles, 0, tiles, 0, tiles.length);
+        System.arraycopy(other.order, 0, order, 0, order.length);
+        System.arraycopy(other.marks, 0, marks, 0, marks.length);
+        placed = other.placed;
+        log = other.log.clone();
+        logSize = other.logSize;
+    }
+
+    /**
+     * Add a tile and connect its paths with the paths of adjacent tiles
+     * @param tile tile being placed
+     * @param x x-coordinate of the tile
+     * @param y y-coordinate of the tile
+     */
+    void addTile(Tile tile, int x, int y) {
+        int location = x * SIZE + y;
+        tiles[location] = tile;
+        order[placed] = location;
+        marks[placed] = logSize;
+        placed++;
+        connect(location);
+    }
+
+    /**
+     * Remove a tile; constant time if it is the most recently added tile, otherwise all tiles are reconnected
+     * @param x x-coordinate of the tile
+     * @param y y-coordinate of the tile
+     */
+    void removeTile(int x, int y) {
+        int location = x * SIZE + y;
+        tiles[location] = null;
+        if (placed > 0 && order[placed - 1] == location) {
+            placed--;
+            undo(marks[placed]);
+            return;
+        }
+        // rebuild without the removed tile, adding the other tiles back in their original order
+        Tile[] removed = new Tile[tiles.length];
+        int count = 0;
+        for (int i = 0; i < placed; i++) {
+            if (order[i] != location) {
+                order[count++] = order[i];
+                removed[order[i]] = tiles[order[i]];
+                tiles[order[i]] = null;
+            }
+        }
+        placed = count;
+        logSize = 0;
+        for (int i = 0; i < placed; i++) {
+            marks[i] = logSize;
+            tiles[order[i]] = removed[order[i]];
+            connect(order[i]);
+        }
+    }
+
+    /**
+     * Find where a token ends up after entering the tile in front of it
+     * @param packed packed position of a token facing a placed tile
+     * @return packed position at the end of the path
+     */
+    int endOfPath(int packed) {
+        int index = Token.packedIndex(packed);
+        int x = Token.packedX(packed) + DX[index];
+        int y = Token.packedY(packed) + DY[index];
+        return toPacked(farEnd((x * SIZE + y) * 8 + Tile.NEIGHBOR_INDEX[index]));
+    }
+
+    /**
+     * Find where a token would end up if the given tile were placed in front of it, without placing it
+     * @param packed packed position of a token facing an empty location
+     * @param tileCode code of the tile that would be placed
+     * @return packed position at the end of the path
+     */
+    int endOfPathWith(int packed, int tileCode) {
+        int index = Token.packedIndex(packed);
+        int x = Token.packedX(packed) + DX[index];
+        int y = Token.packedY(packed) + DY[index];
+        int entry = Tile.NEIGHBOR_INDEX[index];
+        // the path can come back to the new tile, but uses each of its four paths at most once
+        for (int i = 0; i < 4; i++) {
+            int exit = Tile.getPathEnd(tileCode, entry);
+            int nextX = x + DX[exit];
+            int nextY = y + DY[exit];
+            if (isEmpty(nextX, nextY)) {
+                return Token.pack(x, y, exit);
+            }
+            int end = farEnd((nextX * SIZE + nextY) * 8 + Tile.NEIGHBOR_INDEX[exit]);
+            int endIndex = end % 8;
+            int endX = end / 8 / SIZE + DX[endIndex];
+            int endY = end / 8 % SIZE + DY[endIndex];
+            if (endX != x || endY != y) {
+                return toPacked(end);
+            }
+            entry = Tile.NEIGHBOR_INDEX[endIndex];
+        }
+        throw new IllegalStateException("Path does not end");
+    }
+
+    /**
+     * Find the open end reached by entering the tile of a port from that port
+     * @param port port id
+     * @return port id of the open end
+     */
+    private int farEnd(int port) {
+        int found = find(port);
+        int root = found >> 1;
+        return (found & 1) == 0 ? endB[root] : endA[root];
+    }
+
+    /**
+     * Find the root of a port and the direction of the port relative to it
+     * @param port port id
+     * @return root << 1 | direction
+     */
+    private int find(int port) {
+        int direction = 0;
+        while (parent[port] != port) {
+            direction ^= flip[port];
+            port = parent[port];
+        }
+        return port << 1 | direction;
+    }
+
+    /**
+     * Create the chains of a newly added tile and join them with the chains of its neighbors
+     * @param location x * 6 + y of the new tile
+     */
+    private void connect(int location) {
+        Tile tile = tiles[location];
+        int base = location * 8;
+        // ports of the new tile are unused before, so they are initialized without logging
+        for (int index = 0; index < 8; index++) {
+            int end = tile.getPathEnd(index);
+            int port = base + index;
+            if (index < end) {
+                parent[port] = port;
+                flip[port] = 0;
+                size[port] = 2;
+                endA[port] = port;
+                endB[port] = base + end;
+            } else {
+                parent[port] = base + end;
+                flip[port] = 1;
+            }
+        }
+        int x = location / SIZE;
+        int y = location % SIZE;
+        for (int index = 0; index < 8; index++) {
+            int nextX = x + DX[index];
+            int nextY = y + DY[index];
+            if (!isEmpty(nextX, nextY)) {
+                union(base + index, (nextX * SIZE + nextY) * 8 + Tile.NEIGHBOR_INDEX[index]);
+            }
+        }
+    }
+
+    /**
+     * Join the chains of two facing open ends
+     * @param u an open end
+     * @param v the open end facing u
+     */
+    private void union(int u, int v) {
+        int foundU = find(u);
+        int foundV = find(v);
+        int rootU = foundU >> 1;
+        int rootV = foundV >> 1;
+        if (rootU == rootV) {
+            // the chain is closed into a loop without open ends
+            set(endA, rootU, -1);
+            set(endB, rootU, -1);
+            return;
+        }
+        int otherU = endA[rootU] == u ? endB[rootU] : endA[rootU];
+        int otherV = endA[rootV] == v ? endB[rootV] : endA[rootV];
+        if (size[rootU] < size[rootV]) {
+            int temp = rootU;
+            rootU = rootV;
+            rootV = temp;
+        }
+        // facing ports travel in opposite directions
+        set(parent, rootV, rootU);
+        set(flip, rootV, 1 ^ (foundU & 1) ^ (foundV & 1));
+        set(size, rootU, size[rootU] + size[rootV]);
+        // entering the merged chain at one of its ends travels to the other
+        if ((find(otherU) & 1) == 0) {
+            set(endA, rootU, otherU);
+            set(endB, rootU, otherV);
+        } else {
+            set(endA, rootU, otherV);
+            set(endB, rootU, otherU);
+        }
+    }
+
+    private boolean isEmpty(int x, int y) {
+        return x < 0 || y < 0 || x >= SIZE || y >= SIZE || tiles[x * SIZE + y] == null;
+    }
+
+    private static int toPacked(int port) {
+        return Token.pack(port / 8 / SIZE, port / 8 % SIZE, port % 8);
+    }
+
+    /**
+     * Set a value in one of the union-find arrays and log the old value
+     */
+    private void set(int[] array, int port, int value) {
+        if (logSize + 2 > log.length) {
+            int[] larger = new int[log.length * 2];
+            System.arraycopy(log, 0, larger, 0, logSize);
+            log = larger;
+        }
+        log[logSize++] = arrayTag(array) << 16 | port;
+        log[logSize++] = array[port];
+        array[port] = value;
+    }
+
+    private void undo(int mark) {
+        while (logSize > mark) {
+            int old = log[--logSize];
+            int entry = log[--logSize];
+            arrayOf(entry >> 16)[entry & 0xFFFF] = old;
+        }
+    }
+
+    private int arrayTag(int[] array) {
+        if (array == parent) return 0;
+        if (array == flip) return 1;
+        if (array == size) return 2;
+        if (array == endA) return 3;
+        return 4;
+    }
+
+    private int[] arrayOf(int tag) {
+        switch (tag) {
+            case 0: return parent;
+            case 1: return flip;
+            case 2: return size;
+            case 3: return endA;
+            default: return endB;
+        }
+    }
+}
@@ -1,105 +1,325 @@
 package tsuro;
 
 import org.w3c.dom.Document;
+import tsuro.parser.BinaryParser;
+import tsuro.parser.BoardDelta;
 import tsuro.parser.Parser;
 
 import javax.xml.parsers.DocumentBuilder;
 import java.io.*;
 import java.net.Socket;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 public class RemotePlayer extends APlayer {
 
-    private BufferedReader in;
-    private PrintWriter out;
+    private PlayerConnection connection;
     private Parser parser;
+    private String name;
+    // every message after get-name is a frame of BinaryParser, as the player asked for it
+    private boolean binary;
+    // the board the player holds, when it asked for the changes of the board only; null otherwise
+    private BoardDelta delta;
+    // print every completed call to console
+    public boolean verbose = true;
 
     private int color;
     private List<Integer> colors;
+    // time spent building and serializing messages, and parsing responses
+    private LatencyHistogram encodeLatency = new LatencyHistogram();
+    private LatencyHistogram decodeLatency = new LatencyHistogram();
 
     public RemotePlayer(Socket socket, DocumentBuilder db) throws IOException {
-        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        this.out = new PrintWriter(socket.getOutputStream(), true);
+        this(new SocketConnection(socket), db);
+    }
+
+    /**
+     * @param connection connection to the player, e.g. from SelectorServer.accept()
+     * @param db document builder used by this player only, or by players of the same game
+     */
+    public RemotePlayer(PlayerConnection connection, DocumentBuilder db) {
+        this.connection = connection;
         this.parser = new Parser(db);
     }
 
+    /**
+     * Record the time spent encoding and decoding messages in the ENCODE and DECODE phases of a game
+     * @param latencies latency histograms of the game
+     */
+    public void setLatencies(Latencies latencies) {
+        this.encodeLatency = latencies.get(Latencies.ENCODE);
+        this.decodeLatency = latencies.get(Latencies.DECODE);
+    }
+
+    /**
+     * Fail every later call not answered within a deadline with a TimeoutException, dropping the connection
+     * @param millis deadline in milliseconds; 0 for none
+     */
+    public void setDeadline(long millis) {
+        connection.setTimeout(millis);
+    }
+
+    /**
+     * Get the name of the player; asked over the network only once
+     */
     public String getName() throws Exception {
+        if (name != null) {
+            return name;
+        }
+        return getNameAsync().await();
+    }
+
+    /**
+     * Ask for the name of the player without waiting for the answer; see initializeAsync
+     * @return the answer, giving the name also kept for getName
+     */
+    public Answer<String> getNameAsync() throws Exception {
         // to socket
+        long start = System.nanoTime();
         Document inDoc = parser.buildGetNameXML();
         String s = parser.documentToString(inDoc);
-        out.println(s);
+        encodeLatency.record(System.nanoTime() - start);
 
         // from socket
-        Document outDoc = parser.stringToDocument(in.readLine());
-        String name = parser.fromGetNameXML(outDoc);
+        return new Answer<>(connection.request(s), line -> {
+            long decodeStart = System.nanoTime();
+            Document outDoc = parser.stringToDocument(line);
+            String name = parser.fromGetNameXML(outDoc);
+            String protocol = parser.fromGetNameProtocolXML(outDoc);
+            decodeLatency.record(System.nanoTime() - decodeStart);
 
-        System.out.println("Remote: getName complete - player name is " + name);
-        return name;
+            this.name = name;
+            this.binary = BinaryParser.PROTOCOL.equals(protocol) || BinaryParser.DELTA_PROTOCOL.equals(protocol);
+            this.delta = BinaryParser.DELTA_PROTOCOL.equals(protocol) ? new BoardDelta() : null;
+            if (verbose) {
+                System.out.println("Remote: getName complete - player name is " + name);
+            }
+            return name;
+        });
     }
 
     public void initialize(int color, List<Integer> colors) throws Exception {
+        initializeAsync(color, colors).await();
+    }
+
+    /**
+     * Initialize the player without waiting for the answer, so that a game can initialize all its players
+     * at once. The answer is parsed by the thread waiting for it, as for every other call, so a document
+     * builder shared by the players of a game is only used by the thread of the game.
+     * @return the answer, to wait for before the next call to the player
+     */
+    public Answer<Void> initializeAsync(int color, List<Integer> colors) throws Exception {
         checkState("initialize");
         validColorAndColors(color, colors);
+        if (binary) {
+            long start = System.nanoTime();
+            byte[] message = BinaryParser.buildInitialize(color, colors);
+            encodeLatency.record(System.nanoTime() - start);
+            return new Answer<>(connection.requestFrame(message), answer -> {
+                long decodeStart = System.nanoTime();
+                BinaryParser.fromVoid(answer);
+                decodeLatency.record(System.nanoTime() - decodeStart);
+                initialized(color, colors);
+                return null;
+            });
+        }
         // to socket
+        long start = System.nanoTime();
         Document inDoc = parser.buildInitializeXML(color, colors);
-        out.println(parser.documentToString(inDoc));
+        String s = parser.documentToString(inDoc);
+        encodeLatency.record(System.nanoTime() - start);
 
         // from socket, must be void
-        Document outDoc = parser.stringToDocument(in.readLine());
-        if (!outDoc.getFirstChild().getNodeName().equals("void")) {
-            throw new IllegalArgumentException("Response is not void!");
-        }
+        return new Answer<>(connection.request(s), line -> {
+            long decodeStart = System.nanoTime();
+            Document outDoc = parser.stringToDocument(line);
+            decodeLatency.record(System.nanoTime() - decodeStart);
+            if (!outDoc.getFirstChild().getNodeName().equals("void")) {
+                throw new IllegalArgumentException("Response is not void!");
+            }
+            initialized(color, colors);
+            return null;
+        });
+    }
 
+    private void initialized(int color, List<Integer> colors) {
         this.color = color;
         this.colors = colors;
-        System.out.println("Remote: initialize complete");
+        if (verbose) {
+            System.out.println("Remote: initialize complete");
+        }
     }
 
     public Token placePawn(Board b) throws Exception {
         checkState("place-pawn");
-        // to socket
-        Document inDoc = parser.buildPlacePawnXML(b);
-        out.println(parser.documentToString(inDoc));
+        Token token;
+        if (binary) {
+            long start = System.nanoTime();
+            byte[] message = delta != null ? BinaryParser.buildPlacePawn(b, delta) : BinaryParser.buildPlacePawn(b);
+            encodeLatency.record(System.nanoTime() - start);
 
-        // from socket
-        Document outDoc = parser.stringToDocument(in.readLine());
-        Pair<int[], Integer> pair = parser.fromPlacePawnXML(outDoc);
-        Token token = new Token(color, pair.first, pair.second);
+            byte[] answer = exchangeFrame(message);
+            start = System.nanoTime();
+            token = BinaryParser.fromPawnLoc(answer, color);
+            decodeLatency.record(System.nanoTime() - start);
+            acknowledge();
+        }
+        else {
+            // to socket
+            long start = System.nanoTime();
+            Document inDoc = parser.buildPlacePawnXML(b);
+            String s = parser.documentToString(inDoc);
+            encodeLatency.record(System.nanoTime() - start);
 
-        System.out.println("Remote: placePawn complete - player starts at [" + token.getPosition()[0] +
-                ", " + token.getPosition()[1] + "], index " + token.getIndex());
+            // from socket
+            String line = exchange(s);
+            start = System.nanoTime();
+            Document outDoc = parser.stringToDocument(line);
+            Pair<int[], Integer> pair = parser.fromPlacePawnXML(outDoc, b);
+            decodeLatency.record(System.nanoTime() - start);
+            token = new Token(color, pair.first, pair.second);
+        }
+
+        if (verbose) {
+            System.out.println("Remote: placePawn complete - player starts at [" + token.getPosition()[0] +
+                    ", " + token.getPosition()[1] + "], index " + token.getIndex());
+        }
         return token;
     }
 
     public Tile playTurn(Board b, List<Tile> hand, int tilesLeft) throws Exception {
         checkState("play-turn");
         Set<Tile> handSet = new HashSet<>(hand);
-        // to socket
-        Document inDoc = parser.buildPlayTurnXML(b, handSet, tilesLeft);
-        out.println(parser.documentToString(inDoc));
+        Tile tile;
+        if (binary) {
+            long start = System.nanoTime();
+            byte[] message = delta != null ? BinaryParser.buildPlayTurn(b, handSet, tilesLeft, delta)
+                    : BinaryParser.buildPlayTurn(b, handSet, tilesLeft);
+            encodeLatency.record(System.nanoTime() - start);
 
-        // from socket
-        Document outDoc = parser.stringToDocument(in.readLine());
-        Tile tile = parser.fromPlayTurnXML(outDoc);
+            byte[] answer = exchangeFrame(message);
+            start = System.nanoTime();
+            tile = BinaryParser.fromTile(answer);
+            decodeLatency.record(System.nanoTime() - start);
+            acknowledge();
+        }
+        else {
+            // to socket
+            long start = System.nanoTime();
+            Document inDoc = parser.buildPlayTurnXML(b, handSet, tilesLeft);
+            String s = parser.documentToString(inDoc);
+            encodeLatency.record(System.nanoTime() - start);
 
-        System.out.print("Remote: playTurn complete - chosen tile is ");
-        tile.print();
+            // from socket
+            String line = exchange(s);
+            start = System.nanoTime();
+            Document outDoc = parser.stringToDocument(line);
+            tile = parser.fromPlayTurnXML(outDoc);
+            decodeLatency.record(System.nanoTime() - start);
+        }
+
+        if (verbose) {
+            System.out.print("Remote: playTurn complete - chosen tile is ");
+            tile.print();
+        }
         return tile;
     }
 
     public void endGame(Board b, List<Integer> colors) throws Exception {
         checkState("end-game");
         Set<Integer> colorsSet = new HashSet<>(colors);
-        // to socket
-        Document inDoc = parser.buildEndGameXML(b, colorsSet);
-        out.println(parser.documentToString(inDoc));
+        if (binary) {
+            long start = System.nanoTime();
+            byte[] message = delta != null ? BinaryParser.buildEndGame(b, colorsSet, delta)
+                    : BinaryParser.buildEndGame(b, colorsSet);
+            encodeLatency.record(System.nanoTime() - start);
 
-        // from socket, must be void
-        Document outDoc = parser.stringToDocument(in.readLine());
-        if (!outDoc.getFirstChild().getNodeName().equals("void")) {
-            throw new IllegalArgumentException("Response is not void!");
+            byte[] answer = exchangeFrame(message);
+            start = System.nanoTime();
+            BinaryParser.fromVoid(answer);
+            decodeLatency.record(System.nanoTime() - start);
+            acknowledge();
         }
+        else {
+            // to socket
+            long start = System.nanoTime();
+            Document inDoc = parser.buildEndGameXML(b, colorsSet);
+            String s = parser.documentToString(inDoc);
+            encodeLatency.record(System.nanoTime() - start);
 
-        System.out.println("Remote: endGame complete");
+            // from socket, must be void
+            String line = exchange(s);
+            start = System.nanoTime();
+            Document outDoc = parser.stringToDocument(line);
+            decodeLatency.record(System.nanoTime() - start);
+            if (!outDoc.getFirstChild().getNodeName().equals("void")) {
+                throw new IllegalArgumentException("Response is not void!");
+            }
+        }
+
+        if (verbose) {
+            System.out.println("Remote: endGame complete");
+        }
+    }
+
+    /**
+     * The player has answered, so it holds the board of the last message
+     */
+    private void acknowledge() {
+        if (delta != null) {
+            delta.acknowledge();
+        }
+    }
+
+    /**
+     * Send a message and wait for the answer of the player
+     */
+    private String exchange(String message) throws Exception {
+        return await(connection.request(message));
+    }
+
+    /**
+     * Send a frame and wait for the frame answering it
+     */
+    private byte[] exchangeFrame(byte[] message) throws Exception {
+        return await(connection.requestFrame(message));
+    }
+
+    private interface Decoder<A, T> {
+        T decode(A answer) throws Exception;
+    }
+
+    /**
+     * An answer of the player still on its way; decoded by the thread waiting for it, never by the thread
+     * receiving it, which is the event loop of a SelectorServer
+     * @param <T> type of the decoded answer
+     */
+    public static class Answer<T> {
+        private final Callable<T> decode;
+
+        private <A> Answer(CompletableFuture<A> answer, Decoder<A, T> decoder) {
+            this.decode = () -> decoder.decode(RemotePlayer.await(answer));
+        }
+
+        /**
+         * Wait for the answer and decode it; throws what failed it, e.g. a TimeoutException
+         * @return the decoded answer
+         */
+        public T await() throws Exception {
+            return decode.call();
+        }
+    }
+
+    /**
+     * Wait for a future of the player; throws what failed it, e.g. a TimeoutException
+     */
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
     }
 }
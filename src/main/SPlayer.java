@@ -25,6 +25,16 @@ public class SPlayer {
         return (MPlayer) player;
     }
 
+    /**
+     * Copy this SPlayer with its own hand, linked to the same APlayer
+     * @return a copy of this SPlayer
+     */
+    SPlayer copy() {
+        SPlayer copy = new SPlayer(token, new ArrayList<>(hand));
+        copy.player = player;
+        return copy;
+    }
+
     /**
      * Link APlayer with current SPlayer
      * @param player APlayer to be linked
@@ -0,0 +1,422 @@
+package tsuro;
+
+import tsuro.parser.BinaryParser;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Non-blocking transport for remote players: a single event loop thread accepts connections and reads
+ * and writes the messages of every connection with one Selector
+ *
+ * Games never block on a socket: a request only queues its message for the event loop and returns a
+ * future of the answer, so one loop can serve thousands of connections across any number of games.
+ * Messages are lines of XML exactly as with Admin, so clients do not change, or frames of the binary
+ * protocol for clients that ask for it.
+ */
+public class SelectorServer implements PlayerListener {
+
+    // longest line or frame accepted from a client; a client sending more is disconnected
+    private static final int MAX_LINE = BinaryParser.MAX_FRAME;
+    // time without accepting after accepting failed, e.g. with too many open files; clients wait in the backlog
+    private static final long ACCEPT_PAUSE_MILLIS = 100;
+
+    private final Selector selector;
+    private final ServerSocketChannel listener;
+    private final SelectionKey acceptKey;
+    private final Thread loop;
+    // work handed to the event loop by other threads
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final ConnectionQueue connections = new ConnectionQueue();
+    private volatile boolean closed;
+    // set once every connection has failed; tasks are then run by the thread handing them over
+    private volatile boolean stopped;
+    // System.nanoTime() at which accepting starts again, while paused
+    private long acceptPausedUntil;
+    private boolean acceptPaused;
+
+    /**
+     * Listen on a port and start the event loop
+     * @param port port number; 0 for any free port
+     */
+    public SelectorServer(int port) throws IOException {
+        // the JDK sets up closing sockets on the first close, which fails for good when that close happens
+        // with no file descriptor left; close one now so that dropping clients later never needs one
+        SocketChannel.open().close();
+        this.selector = Selector.open();
+        this.listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress(port));
+        listener.configureBlocking(false);
+        this.acceptKey = listener.register(selector, SelectionKey.OP_ACCEPT);
+        this.loop = new Thread(this::run, "tsuro-selector-" + getPort());
+        loop.setDaemon(true);
+        loop.start();
+    }
+
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) listener.getLocalAddress()).getPort();
+    }
+
+    public CompletableFuture<PlayerConnection> accept() {
+        return connections.claim();
+    }
+
+    /**
+     * Stop the event loop and close every connection
+     */
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    private void execute(Runnable task) {
+        if (Thread.currentThread() == loop) {
+            task.run();
+        }
+        else {
+            tasks.add(task);
+            // a task added after the event loop has stopped fails its request here, as the loop never will
+            if (stopped) {
+                runTasks();
+            }
+            else {
+                selector.wakeup();
+            }
+        }
+    }
+
+    private void runTasks() {
+        synchronized (tasks) {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                if (acceptPaused) {
+                    long left = TimeUnit.NANOSECONDS.toMillis(acceptPausedUntil - System.nanoTime());
+                    if (left <= 0) {
+                        acceptPaused = false;
+                        acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+                        selector.selectNow();
+                    }
+                    else {
+                        selector.select(left);
+                    }
+                }
+                else {
+                    selector.select();
+                }
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        acceptAll();
+                    }
+                    else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("SelectorServer: event loop failed: " + e.getMessage());
+        } finally {
+            shutDown();
+        }
+    }
+
+    /**
+     * Accept every client waiting; a client that cannot be set up is dropped, and when accepting itself
+     * fails, e.g. with too many open files, accepting pauses for a moment while the other connections go on
+     */
+    private void acceptAll() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = listener.accept();
+            } catch (IOException e) {
+                System.err.println("SelectorServer: failed to accept, pausing: " + e.getMessage());
+                acceptKey.interestOps(0);
+                acceptPaused = true;
+                acceptPausedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ACCEPT_PAUSE_MILLIS);
+                return;
+            }
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Connection connection = new Connection(channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                connections.offer(connection);
+            } catch (IOException e) {
+                System.err.println("SelectorServer: failed to set up a connection: " + e.getMessage());
+                try {
+                    channel.close();
+                } catch (IOException closing) {
+                    // already failing
+                }
+            }
+        }
+    }
+
+    private void shutDown() {
+        closed = true;
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                ((Connection) key.attachment()).fail(new ClosedChannelException());
+            }
+        }
+        // the connections never claimed have just failed with the others
+        connections.close();
+        stopped = true;
+        runTasks();
+        try {
+            listener.close();
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("SelectorServer: failed to close: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A client connection; every field is only used by the event loop
+     */
+    private class Connection implements PlayerConnection {
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private final ByteBuffer input = ByteBuffer.allocate(8192);
+        // bytes of the line or frame being read
+        private byte[] line = new byte[256];
+        private int lineLength;
+        private ByteBuffer output;
+        // the answer expected, a line or a frame; at most one of them
+        private CompletableFuture<String> answer;
+        private CompletableFuture<byte[]> frameAnswer;
+        // input is read as frames once a frame has been sent; the protocol never goes back to lines
+        private boolean frames;
+        private boolean open = true;
+        // set by the game, read when it makes a request
+        private volatile long timeout;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        public CompletableFuture<String> request(String message) {
+            CompletableFuture<String> response = new CompletableFuture<>();
+            byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+            execute(() -> {
+                if (expect(response)) {
+                    answer = response;
+                    send(ByteBuffer.wrap(bytes));
+                }
+            });
+            return withTimeout(response);
+        }
+
+        public CompletableFuture<byte[]> requestFrame(byte[] payload) {
+            CompletableFuture<byte[]> response = new CompletableFuture<>();
+            ByteBuffer frame = ByteBuffer.allocate(4 + payload.length);
+            frame.putInt(payload.length).put(payload).flip();
+            execute(() -> {
+                if (expect(response)) {
+                    frameAnswer = response;
+                    frames = true;
+                    send(frame);
+                }
+            });
+            return withTimeout(response);
+        }
+
+        private <T> CompletableFuture<T> withTimeout(CompletableFuture<T> response) {
+            if (timeout > 0) {
+                response.orTimeout(timeout, TimeUnit.MILLISECONDS).whenComplete((message, failure) -> {
+                    if (failure instanceof TimeoutException) {
+                        close();
+                    }
+                });
+            }
+            return response;
+        }
+
+        public void setTimeout(long millis) {
+            timeout = millis;
+        }
+
+        public void close() {
+            execute(() -> fail(new ClosedChannelException()));
+        }
+
+        /**
+         * Check that a response can be expected now; fail it otherwise
+         */
+        private boolean expect(CompletableFuture<?> response) {
+            if (!open) {
+                response.completeExceptionally(new ClosedChannelException());
+                return false;
+            }
+            if (answer != null || frameAnswer != null) {
+                response.completeExceptionally(new IllegalStateException("The answer to another message is expected"));
+                return false;
+            }
+            return true;
+        }
+
+        private void send(ByteBuffer bytes) {
+            output = bytes;
+            write();
+        }
+
+        void write() {
+            try {
+                channel.write(output);
+                key.interestOps(output.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                        : SelectionKey.OP_READ);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        void read() {
+            try {
+                int n = channel.read(input);
+                if (n < 0) {
+                    fail(new EOFException("Connection closed by client"));
+                    return;
+                }
+                input.flip();
+                while (input.hasRemaining()) {
+                    if (frames) {
+                        if (!readFrame()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    byte b = input.get();
+                    if (b == '\n') {
+                        completeLine();
+                    }
+                    else if (lineLength == MAX_LINE) {
+                        fail(new IOException("Line longer than " + MAX_LINE + " bytes"));
+                        return;
+                    }
+                    else {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, Math.min(line.length * 2, MAX_LINE));
+                        }
+                        line[lineLength++] = b;
+                    }
+                }
+                input.clear();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Read input into the frame being read: its 4 byte length, then its payload
+         * @return false if the connection has failed
+         */
+        private boolean readFrame() {
+            if (lineLength < 4) {
+                line[lineLength++] = input.get();
+                if (lineLength < 4) {
+                    return true;
+                }
+                int length = frameLength();
+                if (length < 0 || length > MAX_LINE) {
+                    fail(new IOException("Frame of " + length + " bytes"));
+                    return false;
+                }
+                if (line.length < 4 + length) {
+                    line = Arrays.copyOf(line, 4 + length);
+                }
+            }
+            int end = 4 + frameLength();
+            int n = Math.min(input.remaining(), end - lineLength);
+            input.get(line, lineLength, n);
+            lineLength += n;
+            if (lineLength == end) {
+                byte[] payload = Arrays.copyOfRange(line, 4, end);
+                lineLength = 0;
+                CompletableFuture<byte[]> response = frameAnswer;
+                frameAnswer = null;
+                // frames nobody asked for are dropped
+                if (response != null) {
+                    response.complete(payload);
+                }
+            }
+            return true;
+        }
+
+        private int frameLength() {
+            return (line[0] & 0xFF) << 24 | (line[1] & 0xFF) << 16 | (line[2] & 0xFF) << 8 | (line[3] & 0xFF);
+        }
+
+        private void completeLine() {
+            int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+            String message = new String(line, 0, length, StandardCharsets.UTF_8);
+            lineLength = 0;
+            CompletableFuture<String> response = answer;
+            answer = null;
+            // lines nobody asked for are dropped
+            if (response != null) {
+                response.complete(message);
+            }
+        }
+
+        void fail(IOException cause) {
+            if (!open) {
+                return;
+            }
+            open = false;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // already failing
+            }
+            if (answer != null) {
+                answer.completeExceptionally(cause);
+                answer = null;
+            }
+            if (frameAnswer != null) {
+                frameAnswer.completeExceptionally(cause);
+                frameAnswer = null;
+            }
+        }
+    }
+}
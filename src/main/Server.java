@@ -2,9 +2,15 @@ package tsuro;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import java.net.ServerSocket;
 import java.util.*;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * A single game of Tsuro; each instance owns its own board, deck, players and dragon holder,
+ * so any number of games can run in one JVM as long as each instance is used by one thread at a time
+ */
 public class Server {
 
     public int PORT_NUM;
@@ -17,23 +23,50 @@ public class Server {
     public List<Integer> colors;
     public SPlayer dragonHolder = null;
     public boolean gameOver = false;
+    // print every turn to console, used when playing over network
+    public boolean verbose = false;
+    public int turnCount = 0;
+    // latencies of the phases of every turn, see Latencies
+    public final Latencies latencies = new Latencies();
+    private final LatencyHistogram legalPlayLatency = latencies.get(Latencies.LEGAL_PLAY);
+    private final LatencyHistogram checkHandLatency = latencies.get(Latencies.CHECK_HAND);
+    private final LatencyHistogram boardUpdateLatency = latencies.get(Latencies.BOARD_UPDATE);
+    // reused by every legality check
+    private final LegalMoves legalMoves = new LegalMoves();
+    // where every tile is; rebuilt from the game state after setState
+    private final TileLedger ledger = new TileLedger();
+    private boolean ledgerValid = true;
+    // active players by the board location x * 6 + y their token faces; only a tile placed there moves them
+    private final List<List<SPlayer>> facing = new ArrayList<>();
+    private boolean facingValid = true;
+    // deadline in milliseconds of every call to a remote player, 0 for none
+    private long deadline;
+    // remote players that missed a deadline; they are not called again
+    private final Set<APlayer> timedOut = new HashSet<>();
+    // told the state of the game after every turn of playGame, null for none
+    private Consumer<GameState> turnListener;
+
+    public Server() {
+        this(new Deck());
+    }
 
-    private static Server server = null;
+    /**
+     * @param drawPile the draw pile of the game, e.g. a deck shuffled by a seeded Random
+     */
+    public Server(Deck drawPile) {
+        this(new Board(), drawPile);
+    }
 
-    private Server() {
-        this.board = new Board();
-        this.drawPile = new Deck();
+    private Server(Board board, Deck drawPile) {
+        this.board = board;
+        this.drawPile = drawPile;
         this.inSPlayers = new ArrayList<>();
         this.outSPlayers = new ArrayList<>();
         this.winners = new ArrayList<>();
         this.colors = new ArrayList<>();
-    }
-
-    public static Server getInstance() {
-        if (server == null) {
-            server = new Server();
+        for (int i = 0; i < board.SIZE * board.SIZE; i++) {
+            facing.add(new ArrayList<>());
         }
-        return server;
     }
 
     // both mainly used by unit tests
@@ -45,6 +78,8 @@ public class Server {
         this.drawPile = drawPile;
         this.dragonHolder = null;
         this.gameOver = false;
+        this.ledgerValid = false;
+        this.facingValid = false;
     }
 
     public void setState(Board board, List<SPlayer> inSPlayer, List<SPlayer> outSPlayer, List<SPlayer> winners, List<Integer> colors, Deck drawPile) {
@@ -52,6 +87,48 @@ public class Server {
         this.colors = colors;
     }
 
+    /**
+     * Copy the state of this game, so that turns can be played on the copy without changing this one;
+     * the copy starts with the latencies recorded so far and shares the tiles and the APlayers, but not the
+     * turn listener. Its draw pile shuffles with a Random of its own, seeded from the one of this game, so
+     * that copies of a seeded game are reproducible and independent of each other.
+     * @return a game in the same state, ready to play the next turn
+     */
+    public Server copy() {
+        Deck pile = new Deck(drawPile.getPile(), new Random(drawPile.getRandom().nextLong()));
+        Server copy = new Server(board.copyTiles(), pile);
+        Map<SPlayer, SPlayer> copies = new IdentityHashMap<>();
+        for (SPlayer sp : board.getSPlayerList()) {
+            copy.board.addSPlayer(copies.computeIfAbsent(sp, SPlayer::copy));
+        }
+        for (SPlayer sp : inSPlayers) {
+            copy.inSPlayers.add(copies.computeIfAbsent(sp, SPlayer::copy));
+        }
+        for (SPlayer sp : outSPlayers) {
+            copy.outSPlayers.add(copies.computeIfAbsent(sp, SPlayer::copy));
+        }
+        for (SPlayer sp : winners) {
+            copy.winners.add(copies.computeIfAbsent(sp, SPlayer::copy));
+        }
+        copy.colors = new ArrayList<>(colors);
+        copy.dragonHolder = dragonHolder == null ? null : copies.computeIfAbsent(dragonHolder, SPlayer::copy);
+        copy.PORT_NUM = PORT_NUM;
+        copy.gameOver = gameOver;
+        copy.verbose = verbose;
+        copy.turnCount = turnCount;
+        copy.deadline = deadline;
+        copy.timedOut.addAll(timedOut);
+        copy.latencies.add(latencies);
+        if (ledgerValid) {
+            copy.ledger.copyFrom(ledger);
+        }
+        else {
+            copy.ledger.rebuild(copy.board, copy.drawPile, copy.inSPlayers);
+        }
+        copy.rebuildFacing();
+        return copy;
+    }
+
     /**
      * Register a APlayer with Server; also create corresponding SPlayer
      * @param ip a given player
@@ -67,8 +144,9 @@ public class Server {
         }
         inSPlayers.add(sp);
         board.addSPlayer(sp);
+        addFacing(sp);
         for (int i = 0; i < 3; i++){
-            sp.draw(drawPile.pop());
+            drawTile(sp);
         }
     }
 
@@ -88,33 +166,7 @@ public class Server {
             return false;
         }
         // check condition (2)
-        Token currT = sp.getToken();
-        int[] location = Board.getAdjacentLocation(currT);
-        b.placeTile(t, location[0], location[1]);
-        Token newT = b.simulateMove(currT);
-        b.deleteTile(location[0], location[1]);
-        if (!newT.isOffBoard()){
-            // original rotation is legal, return true
-            return true;
-        }
-        // try placing other tiles and rotations
-        for (Tile tile : sp.getHand()) {
-            Tile copy = tile.copyTile();
-            for (int i = 0; i < 4; i++) {
-                copy.rotateTile();
-                b.placeTile(copy, location[0], location[1]);
-                newT = b.simulateMove(currT);
-                b.deleteTile(location[0], location[1]);
-                if (!newT.isOffBoard()) {
-                    // original rotation is illegal for one of below is true:
-                    // 1. one other rotation of this tile is legal
-                    // 2. one other tile with some rotation is legal
-                    return false;
-                }
-            }
-        }
-        // all possible moves lead to elimination, current move is legal
-        return true;
+        return legalMoves.generate(b, sp.getToken().pack(), sp.getHand()).isLegal(t);
     }
 
     /**
@@ -125,29 +177,46 @@ public class Server {
      */
     public List<SPlayer> playATurn(Tile t) throws Exception {
         SPlayer currentP = inSPlayers.get(0);
+        turnCount++;
         // *****************************************
         // ****** Step 1: Contract Validation ******
         // *****************************************
         // check if SPlayer is cheating by playing an illegal move
         currentP.draw(t);
-        if (!legalPlay(currentP, board, t)) {
+        // each phase starts where the previous one ends, to read the clock as few times as possible
+        long start = System.nanoTime();
+        boolean legal = legalPlay(currentP, board, t);
+        long end = System.nanoTime();
+        legalPlayLatency.record(end - start);
+        if (!legal) {
             System.err.println("Caught cheating: Player tried to play an illegal tile while holding at least one other legal tile");
             t = playerCheatIllegalTile(currentP);
+            end = System.nanoTime();
         }
         currentP.deal(t);
         // check if this SPlayer's hand is legal
+        start = end;
         checkLegalHand(currentP);
+        end = System.nanoTime();
+        checkHandLatency.record(end - start);
 
         // ***********************************************
         // ****** Step 2: Board & Player Operation *******
         // ***********************************************
         // place tile on the board
+        start = end;
         int[] location = Board.getAdjacentLocation(currentP.getToken());
         board.placeTile(t, location[0], location[1]);
-        // move all remaining active SPlayers
-        List<SPlayer> deadP = new ArrayList<>();
-        for (SPlayer player : inSPlayers) {
-            moveSPlayer(currentP, player, deadP);
+        ledger.toBoard(t, location[0], location[1]);
+        // move the active SPlayers facing the new tile
+        List<SPlayer> deadP = moveSPlayers(location[0], location[1]);
+        boardUpdateLatency.record(System.nanoTime() - start);
+        // current SPlayer draw or get dragon
+        if (!drawPile.isEmpty()) {
+            drawTile(currentP);
+        }
+        else {
+            giveDragon(currentP);
         }
         // move the current SPlayer
         inSPlayers.remove(0);
@@ -170,26 +239,57 @@ public class Server {
     }
 
     /**
-     * Move a SPlayer on the board
-     * @param currentP SPLayer for current turn
-     * @param player SPlayer to be moved
-     * @param deadP list of dead SPlayers for current turn
+     * Move the SPlayers whose tokens face a newly placed tile
+     * @param x x-coordinate of the new tile
+     * @param y y-coordinate of the new tile
+     * @return SPlayers eliminated by the move, in the order of inSPlayers
      */
-    private void moveSPlayer(SPlayer currentP, SPlayer player, List<SPlayer> deadP) {
-        Token token = board.simulateMove(player.getToken());
-        player.updateToken(token);
-        if (token.isOffBoard()) {
-            deadP.add(player);
-        }
-        // current SPlayer draw or get dragon
-        if (player.isSameSPlayer(currentP)){
-            if (!drawPile.isEmpty()) {
-                player.draw(drawPile.pop());
+    private List<SPlayer> moveSPlayers(int x, int y) {
+        if (!facingValid) {
+            rebuildFacing();
+        }
+        List<SPlayer> moved = facing.get(x * board.SIZE + y);
+        List<SPlayer> dead = new ArrayList<>();
+        for (SPlayer player : moved) {
+            int start = player.getToken().pack();
+            int end = board.simulateMove(start);
+            board.updateToken(player, Token.fromPacked(player.getToken().getColor(), end));
+            if (Token.isOffBoard(end)) {
+                dead.add(player);
             }
             else {
-                giveDragon(player);
+                facing.get(Board.getAdjacentX(end) * board.SIZE + Board.getAdjacentY(end)).add(player);
             }
         }
+        moved.clear();
+        List<SPlayer> deadP = new ArrayList<>();
+        if (!dead.isEmpty()) {
+            for (SPlayer player : inSPlayers) {
+                if (dead.contains(player)) {
+                    deadP.add(player);
+                }
+            }
+        }
+        return deadP;
+    }
+
+    private void addFacing(SPlayer sp) {
+        int packed = sp.getToken().pack();
+        int x = Board.getAdjacentX(packed);
+        int y = Board.getAdjacentY(packed);
+        if (!Token.isOffBoard(packed) && x >= 0 && y >= 0 && x < board.SIZE && y < board.SIZE) {
+            facing.get(x * board.SIZE + y).add(sp);
+        }
+    }
+
+    private void rebuildFacing() {
+        for (List<SPlayer> players : facing) {
+            players.clear();
+        }
+        for (SPlayer sp : inSPlayers) {
+            addFacing(sp);
+        }
+        facingValid = true;
     }
 
     /**
@@ -264,6 +364,9 @@ public class Server {
      */
     private void returnHandToDeck(List<SPlayer> deadSPlayers) {
         for (SPlayer deadSPlayer : deadSPlayers) {
+            for (Tile t : deadSPlayer.getHand()) {
+                ledger.toDeck(t);
+            }
             drawPile.addAndShuffle(deadSPlayer.getHand());
             deadSPlayer.getHand().clear();
         }
@@ -276,18 +379,29 @@ public class Server {
      * Cheating player is replaced with a MPlayer with Random strategy
      */
     private void playerCheatIllegalPawn(SPlayer p) throws Exception {
-        replaceWithMPlayer(p);
-        p.updateToken(p.getPlayer().placePawn(board));
+        replaceWithMPlayer(p, "cheated");
+        board.updateToken(p, p.getPlayer().placePawn(board));
     }
 
     private Tile playerCheatIllegalTile(SPlayer p) throws Exception {
-        replaceWithMPlayer(p);
+        replaceWithMPlayer(p, "cheated");
         p.getMPlayer().state = MPlayer.State.PLAY;
         return p.getPlayer().playTurn(board, p.getHand(), drawPile.size());
     }
 
-    private void replaceWithMPlayer(SPlayer p) throws Exception {
-        System.out.println("Player " + p.getPlayer().getName() + " cheated and is replaced by a random machine player");
+    /**
+     * Handle the case when a remote player misses the deadline of its turn: a MPlayer with Random strategy
+     * plays the turn and the rest of the game
+     */
+    private Tile playerTimedOutTile(SPlayer p) throws Exception {
+        timedOut.add(p.getPlayer());
+        replaceWithMPlayer(p, "missed the deadline");
+        p.getMPlayer().state = MPlayer.State.PLAY;
+        return p.getPlayer().playTurn(board, p.getHand(), drawPile.size());
+    }
+
+    private void replaceWithMPlayer(SPlayer p, String reason) throws Exception {
+        System.out.println("Player " + p.getPlayer().getName() + " " + reason + " and is replaced by a random machine player");
         MPlayer newPlayer = new MPlayerRandom(p.getPlayer().getName());
         newPlayer.initialize(p.getToken().getColor(), colors);
         p.linkPlayer(newPlayer);
@@ -306,39 +420,48 @@ public class Server {
         else if (hand.size() > 3) {
             throw new IllegalArgumentException("Player's hand illegal: more than 3 tiles on hand");
         }
-        List<Tile> inHands = new ArrayList<>();
-        for (SPlayer player : inSPlayers) {
-            inHands.addAll(player.getHand());
+        if (!ledgerValid) {
+            ledger.rebuild(board, drawPile, inSPlayers);
+            ledgerValid = true;
         }
-        for (Tile playerTile : hand) {
+        int color = p.getToken().getColor();
+        for (int i = 0; i < hand.size(); i++) {
+            Tile playerTile = hand.get(i);
+            // make sure tile is a valid tile in the original deck
+            if (playerTile.getId() < 0 || playerTile.getId() >= Tile.NUM_TILES) {
+                throw new IllegalArgumentException("Player's hand illegal: tile is not a legal tile");
+            }
+            int location = ledger.getLocation(playerTile);
             // not already on board
-            if (board.containsTile(playerTile)) {
+            if (TileLedger.isOnBoard(location)) {
                 throw new IllegalArgumentException("Player's hand illegal: tile exists on board");
             }
             // not in the current draw pile
-            if (drawPile.containsTile(playerTile)) {
+            if (location == TileLedger.DECK) {
                 throw new IllegalArgumentException("Player's hand illegal: tile exists in draw pile");
             }
             // not in other player's hand or the current player's hand does not contain duplicate tiles
-            int count = 0;
-            for (Tile t : inHands) {
-                if (t.isSameTile(playerTile)) {
-                    count++;
-                    if (count > 1) {
-                        throw new IllegalArgumentException("Player's hand illegal: tile exists in other player's hand");
-                    }
-                }
+            if (location != color) {
+                throw new IllegalArgumentException("Player's hand illegal: tile exists in other player's hand");
             }
-        }
-        // make sure tile is a valid tile in the original deck
-        Deck tempDeck = new Deck();
-        for (Tile t : hand) {
-            if (!tempDeck.containsTile(t)) {
-                throw new IllegalArgumentException("Player's hand illegal: tile is not a legal tile");
+            for (int j = 0; j < i; j++) {
+                if (hand.get(j).isSameTile(playerTile)) {
+                    throw new IllegalArgumentException("Player's hand illegal: tile exists in other player's hand");
+                }
             }
         }
     }
 
+    /**
+     * Move the top tile of the draw pile to the hand of a player
+     * @param sp the player drawing
+     */
+    private void drawTile(SPlayer sp) {
+        Tile t = drawPile.pop();
+        sp.draw(t);
+        ledger.toHand(t, sp.getToken().getColor());
+    }
+
     /**
      * Check whether sp has dragon
      * @param sp the SPlayer to be checked
@@ -368,11 +491,11 @@ public class Server {
         }
         int index = inSPlayers.indexOf(dragonHolder);
         while (!drawPile.isEmpty()) {
-            dragonHolder.getHand().add(drawPile.pop());
+            drawTile(dragonHolder);
             // if game over, dragon holder tries to draw until full hand
             if (gameOver) {
                 while (drawPile.size() > 0 && dragonHolder.getHand().size() < 3) {
-                    dragonHolder.getHand().add(drawPile.pop());
+                    drawTile(dragonHolder);
                 }
             }
             index = findNextHolder(index);
@@ -437,32 +560,24 @@ public class Server {
             throws Exception {
         checkValidPlayerNumber(numHPlayer, numMPlayerRandom, numMPlayerMSym, numMPlayerLSym, numRemotePlayer);
 
-        ServerSocket socketListener = new ServerSocket(PORT_NUM);
+        SelectorServer selectorServer = new SelectorServer(PORT_NUM);
 
         List<APlayer> allPlayers = initializeAllPlayers(numHPlayer, numMPlayerRandom, numMPlayerMSym,
-                numMPlayerLSym, numRemotePlayer, socketListener);
-
-        placePawnAllPlayers(allPlayers);
+                numMPlayerLSym, numRemotePlayer, selectorServer);
 
         // play game over network
-        while(!server.isGameOver()) {
-            SPlayer currentP = inSPlayers.get(0);
-            System.out.println("Server: current player = " + currentP.getPlayer().getName());
-            Tile tileToPlay = currentP.getPlayer().playTurn(board, currentP.getHand(), drawPile.size());
-            currentP.deal(tileToPlay);
-            server.playATurn(tileToPlay);
-        }
-
-        endGameAllPlayers(allPlayers);
+        verbose = true;
+        playGame(allPlayers);
 
         // print winners
-        System.out.println("Server: game over? = " + server.gameOver);
-        for (SPlayer sPlayer : server.winners) {
+        System.out.println("Server: game over? = " + gameOver);
+        for (SPlayer sPlayer : winners) {
             System.out.println("Server: winner = " + sPlayer.getPlayer().getName());
         }
+        latencies.print("Server: latency of ");
 
-        // close connection
-        socketListener.close();
+        // close connections
+        selectorServer.close();
     }
 
     private void checkValidPlayerNumber(int numHPlayer, int numMPlayerRandom, int numMPlayerMSym, int numMPlayerLSym,
@@ -478,16 +593,19 @@ public class Server {
     }
 
     private List<APlayer> initializeAllPlayers(int numHPlayer, int numMPlayerRandom, int numMPlayerMSym, int numMPlayerLSym,
-                                               int numRemotePlayer, ServerSocket socketListener)
+                                               int numRemotePlayer, SelectorServer selectorServer)
             throws Exception {
         List<APlayer> allPlayers = new ArrayList<>();
         DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
         DocumentBuilder db = dbf.newDocumentBuilder();
 
+        // remote players connect in any order; the event loop of the selector server serves all of them
+        List<CompletableFuture<PlayerConnection>> connections = new ArrayList<>();
         for (int i = 0; i < numRemotePlayer; i++) {
-            // for each remote player, initialize a new socket
-            APlayer remotePlayer = new RemotePlayer(socketListener.accept(), db);
-            allPlayers.add(remotePlayer);
+            connections.add(selectorServer.accept());
+        }
+        for (CompletableFuture<PlayerConnection> connection : connections) {
+            allPlayers.add(new RemotePlayer(connection.get(), db));
         }
 
         for (int i = 0; i < numMPlayerRandom; i++) {
@@ -514,33 +632,178 @@ public class Server {
             allPlayers.add(hPlayer);
         }
 
+        if (allPlayers.size() != numHPlayer + numMPlayerRandom + numMPlayerLSym + numMPlayerMSym + numRemotePlayer){
+            throw new Exception("Total number of players generated is not equal to total expected");
+        }
+        return allPlayers;
+    }
+
+    /**
+     * Set the deadline of every call to a remote player. A remote player missing it is replaced by a random
+     * machine player for the rest of the game, and is not told the end of the game.
+     * @param millis deadline in milliseconds; 0 for none
+     */
+    public void setDeadline(long millis) {
+        this.deadline = millis;
+    }
+
+    /**
+     * Take a snapshot of the whole position of the game; it can be handed to other threads, e.g. of a
+     * spectator or a logger, while the game goes on
+     * @return the state of the game
+     */
+    public GameState getState() {
+        return GameState.of(this);
+    }
+
+    /**
+     * Tell a listener the state of the game after every turn played by playGame, on the thread playing it
+     * @param listener the listener; null for none
+     */
+    public void setTurnListener(Consumer<GameState> listener) {
+        this.turnListener = listener;
+    }
+
+    /**
+     * Play a whole game with the given players, without any network setup
+     * Remote players are asked for their names and initialized all at once, so that the slowest of them
+     * sets the time this takes rather than all of them together.
+     * @param allPlayers players in the order they take turns; their colors are assigned in the same order
+     * @return the list of winners
+     */
+    public List<SPlayer> playGame(List<APlayer> allPlayers) throws Exception {
+        // players missing a deadline before their turns are replaced in this list
+        allPlayers = new ArrayList<>(allPlayers);
+        for (APlayer player : allPlayers) {
+            if (player instanceof RemotePlayer) {
+                ((RemotePlayer) player).setLatencies(latencies);
+                ((RemotePlayer) player).setDeadline(deadline);
+            }
+        }
+        nameAllPlayers(allPlayers);
+        initializeAllColors(allPlayers);
+        placePawnAllPlayers(allPlayers);
+        // playTurn latency histogram of every player, including players replaced after cheating
+        Map<APlayer, LatencyHistogram> turnLatencies = new HashMap<>();
+        while (!isGameOver()) {
+            SPlayer currentP = inSPlayers.get(0);
+            APlayer player = currentP.getPlayer();
+            if (verbose) {
+                System.out.println("Server: current player = " + player.getName());
+            }
+            LatencyHistogram turnLatency = turnLatencies.get(player);
+            if (turnLatency == null) {
+                turnLatency = latencies.get(Latencies.playTurn(currentP.getToken().getColor(), player.getName()));
+                turnLatencies.put(player, turnLatency);
+            }
+            long start = System.nanoTime();
+            Tile tileToPlay;
+            try {
+                tileToPlay = player.playTurn(board, currentP.getHand(), drawPile.size());
+            } catch (TimeoutException e) {
+                tileToPlay = playerTimedOutTile(currentP);
+            }
+            turnLatency.record(System.nanoTime() - start);
+            currentP.deal(tileToPlay);
+            playATurn(tileToPlay);
+            if (turnListener != null) {
+                turnListener.accept(getState());
+            }
+        }
+        endGameAllPlayers(allPlayers);
+        return winners;
+    }
+
+    private void nameAllPlayers(List<APlayer> allPlayers) throws Exception {
+        List<RemotePlayer.Answer<String>> names = new ArrayList<>();
+        for (APlayer player : allPlayers) {
+            names.add(player instanceof RemotePlayer ? ((RemotePlayer) player).getNameAsync() : null);
+        }
         for (int i = 0; i < allPlayers.size(); i++) {
-            colors.add(i);
+            if (names.get(i) != null && awaitTimedOut(names.get(i))) {
+                timedOut.add(allPlayers.get(i));
+                System.out.println("Player " + i + " missed the deadline and is replaced by a random machine player");
+                allPlayers.set(i, new MPlayerRandom("Player " + i));
+            }
         }
+    }
 
+    private void initializeAllColors(List<APlayer> allPlayers) throws Exception {
         for (int i = 0; i < allPlayers.size(); i++) {
-            allPlayers.get(i).initialize(i,colors);
+            colors.add(i);
         }
 
-        if (allPlayers.size() != numHPlayer + numMPlayerRandom + numMPlayerLSym + numMPlayerMSym + numRemotePlayer){
-            throw new Exception("Total number of players generated is not equal to total expected");
+        List<RemotePlayer.Answer<Void>> initialized = new ArrayList<>();
+        for (int i = 0; i < allPlayers.size(); i++) {
+            if (allPlayers.get(i) instanceof RemotePlayer) {
+                initialized.add(((RemotePlayer) allPlayers.get(i)).initializeAsync(i, colors));
+            }
+            else {
+                allPlayers.get(i).initialize(i, colors);
+                initialized.add(null);
+            }
+        }
+        for (int i = 0; i < allPlayers.size(); i++) {
+            if (initialized.get(i) != null && awaitTimedOut(initialized.get(i))) {
+                replaceTimedOut(allPlayers, i);
+            }
         }
-        return allPlayers;
     }
 
     private void placePawnAllPlayers(List<APlayer> allPlayers) throws Exception {
         for (int i = 0; i < allPlayers.size(); i++) {
-            Token token = allPlayers.get(i).placePawn(board);
-            server.registerPlayer(allPlayers.get(i), token);
+            Token token;
+            try {
+                token = allPlayers.get(i).placePawn(board);
+            } catch (TimeoutException e) {
+                token = replaceTimedOut(allPlayers, i).placePawn(board);
+            }
+            registerPlayer(allPlayers.get(i), token);
         }
     }
 
     private void endGameAllPlayers(List<APlayer> allPlayers) throws Exception {
-        List<Integer> winnerColors = server.getCurrentColors();
+        List<Integer> winnerColors = getCurrentColors();
         for (int i = 0; i < allPlayers.size(); i++) {
-            allPlayers.get(i).endGame(server.board, winnerColors);
+            if (timedOut.contains(allPlayers.get(i))) {
+                continue;
+            }
+            try {
+                allPlayers.get(i).endGame(board, winnerColors);
+            } catch (TimeoutException e) {
+                // the game is over anyway
+                timedOut.add(allPlayers.get(i));
+            }
         }
     }
+
+    /**
+     * Wait for the answer of a remote player and decode it on this thread
+     * @return true if the player missed the deadline
+     */
+    private static boolean awaitTimedOut(RemotePlayer.Answer<?> answer) throws Exception {
+        try {
+            answer.await();
+            return false;
+        } catch (TimeoutException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Replace a remote player that missed a deadline before its first turn with an initialized MPlayer
+     * with Random strategy
+     * @return the new player
+     */
+    private APlayer replaceTimedOut(List<APlayer> allPlayers, int color) throws Exception {
+        APlayer player = allPlayers.get(color);
+        timedOut.add(player);
+        System.out.println("Player " + player.getName() + " missed the deadline and is replaced by a random machine player");
+        MPlayer newPlayer = new MPlayerRandom(player.getName());
+        newPlayer.initialize(color, colors);
+        allPlayers.set(color, newPlayer);
+        return newPlayer;
+    }
 }
 
 
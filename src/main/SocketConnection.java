@@ -0,0 +1,138 @@
+package tsuro;
+
+import tsuro.parser.BinaryParser;
+
+import java.io.*;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Blocking connection to a remote player over a socket; a request completes before it returns, so the
+ * calling thread waits for the answer
+ *
+ * The timeout bounds the whole answer, not each read: every read from the socket waits only for what is
+ * left of the time of the request, so a client sending its answer a byte at a time still misses it.
+ */
+class SocketConnection implements PlayerConnection {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private long timeout;
+    // System.nanoTime() by which the answer of the current request is due
+    private long deadline;
+
+    SocketConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(new DeadlineInputStream(socket.getInputStream())));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Stream of the socket whose reads wait no longer than the deadline of the current request
+     */
+    private class DeadlineInputStream extends FilterInputStream {
+
+        DeadlineInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            waitUntilDeadline();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            waitUntilDeadline();
+            return super.read(b, off, len);
+        }
+    }
+
+    private void waitUntilDeadline() throws IOException {
+        if (timeout == 0) {
+            socket.setSoTimeout(0);
+            return;
+        }
+        long left = deadline - System.nanoTime();
+        if (left <= 0) {
+            throw new SocketTimeoutException("Deadline passed");
+        }
+        // rounded up, as 0 would wait forever
+        socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, (left + 999_999) / 1_000_000));
+    }
+
+    private interface Exchange<T> {
+        T run() throws IOException;
+    }
+
+    public CompletableFuture<String> request(String message) {
+        return exchange(() -> {
+            out.write((message + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            return readLine();
+        });
+    }
+
+    public CompletableFuture<byte[]> requestFrame(byte[] payload) {
+        return exchange(() -> {
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.flush();
+            int length = in.readInt();
+            if (length < 0 || length > BinaryParser.MAX_FRAME) {
+                close();
+                throw new IOException("Frame of " + length + " bytes");
+            }
+            byte[] answer = new byte[length];
+            in.readFully(answer);
+            return answer;
+        });
+    }
+
+    private <T> CompletableFuture<T> exchange(Exchange<T> exchange) {
+        CompletableFuture<T> answer = new CompletableFuture<>();
+        deadline = System.nanoTime() + timeout * 1_000_000;
+        try {
+            answer.complete(exchange.run());
+        } catch (SocketTimeoutException e) {
+            close();
+            answer.completeExceptionally(new TimeoutException("No answer within " + timeout + " ms"));
+        } catch (IOException e) {
+            answer.completeExceptionally(e);
+        }
+        return answer;
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new EOFException("Connection closed by client");
+            }
+            if (line.size() == BinaryParser.MAX_FRAME) {
+                close();
+                throw new IOException("Line longer than " + BinaryParser.MAX_FRAME + " bytes");
+            }
+            line.write(b);
+        }
+        String s = line.toString(StandardCharsets.UTF_8);
+        return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
+    }
+
+    public void setTimeout(long millis) {
+        timeout = millis;
+    }
+
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.err.println("Remote: failed to close socket: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package tsuro;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Blocking listener for remote players: one thread accepts clients on a ServerSocket, and every
+ * connection blocks the thread making a request until the client answers
+ *
+ * Meant for games that run one thread per table, ideally virtual threads, where blocking is cheap.
+ * Closing the listener does not close the connections already claimed; their games close them.
+ */
+public class SocketListener implements PlayerListener {
+
+    // time without accepting after accepting failed, e.g. with too many open files; clients wait in the backlog
+    private static final long ACCEPT_PAUSE_MILLIS = 100;
+
+    private final ServerSocket serverSocket;
+    private final ConnectionQueue connections = new ConnectionQueue();
+
+    /**
+     * Listen on a port and start accepting clients
+     * @param port port number; 0 for any free port
+     */
+    public SocketListener(int port) throws IOException {
+        // see SelectorServer: close one socket while file descriptors are left, so that closing never needs one
+        SocketChannel.open().close();
+        this.serverSocket = new ServerSocket(port);
+        Thread loop = new Thread(this::run, "tsuro-listener-" + getPort());
+        loop.setDaemon(true);
+        loop.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public CompletableFuture<PlayerConnection> accept() {
+        return connections.claim();
+    }
+
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.err.println("SocketListener: failed to close: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Accept clients until the listener closes; a client that cannot be set up is dropped, and when
+     * accepting itself fails, e.g. with too many open files, accepting pauses for a moment
+     */
+    private void run() {
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException e) {
+                    if (serverSocket.isClosed()) {
+                        break;
+                    }
+                    System.err.println("SocketListener: failed to accept, pausing: " + e.getMessage());
+                    Thread.sleep(ACCEPT_PAUSE_MILLIS);
+                    continue;
+                }
+                try {
+                    socket.setTcpNoDelay(true);
+                    connections.offer(new SocketConnection(socket));
+                } catch (IOException e) {
+                    System.err.println("SocketListener: failed to set up a connection: " + e.getMessage());
+                    try {
+                        socket.close();
+                    } catch (IOException closing) {
+                        // already failing
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            close();
+        } finally {
+            for (PlayerConnection connection : connections.close()) {
+                connection.close();
+            }
+        }
+    }
+}
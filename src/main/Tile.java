@@ -3,7 +3,85 @@ import java.util.*;
 
 public class Tile {
 
-    private int[][] paths;
+    // number of distinct tiles in a game, i.e. every way to connect 8 ports up to rotation
+    public static final int NUM_TILES = 35;
+
+    // canonical paths of every tile id at rotation 0, in the order they are dealt by a new Deck
+    private static final int[][][] TILE_PATHS = new int[][][] {
+            {{0, 1}, {2, 3}, {4, 5}, {6, 7}},
+            {{0, 1}, {2, 4}, {3, 6}, {5, 7}},
+            {{0, 6}, {1, 5}, {2, 4}, {3, 7}},
+            {{0, 5}, {1, 4}, {2, 7}, {3, 6}},
+            {{0, 2}, {1, 4}, {3, 7}, {5, 6}},
+            {{0, 4}, {1, 7}, {2, 3}, {5, 6}},
+            {{0, 1}, {2, 6}, {3, 7}, {4, 5}},
+            {{0, 2}, {1, 6}, {3, 7}, {4, 5}},
+            {{0, 4}, {1, 5}, {2, 6}, {3, 7}},
+            {{0, 1}, {2, 7}, {3, 4}, {5, 6}},
+            {{0, 2}, {1, 7}, {3, 4}, {5, 6}},
+            {{0, 3}, {1, 5}, {2, 7}, {4, 6}},
+            {{0, 4}, {1, 3}, {2, 7}, {5, 6}},
+            {{0, 3}, {1, 7}, {2, 6}, {4, 5}},
+            {{0, 1}, {2, 5}, {3, 6}, {4, 7}},
+            {{0, 3}, {1, 6}, {2, 5}, {4, 7}},
+            {{0, 1}, {2, 7}, {3, 5}, {4, 6}},
+            {{0, 7}, {1, 6}, {2, 3}, {4, 5}},
+            {{0, 7}, {1, 2}, {3, 4}, {5, 6}},
+            {{0, 2}, {1, 4}, {3, 6}, {5, 7}},
+            {{0, 7}, {1, 3}, {2, 5}, {4, 6}},
+            {{0, 7}, {1, 5}, {2, 6}, {3, 4}},
+            {{0, 4}, {1, 5}, {2, 7}, {3, 6}},
+            {{0, 1}, {2, 4}, {3, 5}, {6, 7}},
+            {{0, 2}, {1, 7}, {3, 5}, {4, 6}},
+            {{0, 7}, {1, 5}, {2, 3}, {4, 6}},
+            {{0, 4}, {1, 3}, {2, 6}, {5, 7}},
+            {{0, 6}, {1, 3}, {2, 5}, {4, 7}},
+            {{0, 1}, {2, 7}, {3, 6}, {4, 5}},
+            {{0, 3}, {1, 2}, {4, 6}, {5, 7}},
+            {{0, 3}, {1, 5}, {2, 6}, {4, 7}},
+            {{0, 7}, {1, 6}, {2, 5}, {3, 4}},
+            {{0, 2}, {1, 3}, {4, 6}, {5, 7}},
+            {{0, 5}, {1, 6}, {2, 7}, {3, 4}},
+            {{0, 5}, {1, 3}, {2, 6}, {4, 7}}    };
+
+    // the following tables are indexed by tile code, i.e. id * 4 + rotation
+    // sorted path matrix of every code
+    private static final int[][][] PATHS = new int[NUM_TILES * 4][][];
+    // exit port of every (code, entry port), at index code * 8 + port
+    private static final int[] EXITS = new int[NUM_TILES * 32];
+    // smallest code of the same id whose paths are identical to this code
+    private static final int[] ORIENTATION = new int[NUM_TILES * 4];
+    // indexed by tile id: number of rotations of the tile with distinct paths, 1, 2 or 4;
+    // rotating a tile by this number of steps gives the same paths
+    private static final int[] DISTINCT_ROTATIONS = new int[NUM_TILES];
+    // port connection key -> smallest code with these connections
+    private static final Map<Integer, Integer> codeByConnections = new HashMap<>();
+
+    static {
+        for (int id = 0; id < NUM_TILES; id++) {
+            for (int rotation = 0; rotation < 4; rotation++) {
+                int code = id * 4 + rotation;
+                int[][] paths = new int[4][2];
+                for (int i = 0; i < 4; i++) {
+                    paths[i][0] = (TILE_PATHS[id][i][0] + 2 * rotation) % 8;
+                    paths[i][1] = (TILE_PATHS[id][i][1] + 2 * rotation) % 8;
+                    Arrays.sort(paths[i]);
+                    EXITS[code * 8 + paths[i][0]] = paths[i][1];
+                    EXITS[code * 8 + paths[i][1]] = paths[i][0];
+                }
+                Arrays.sort(paths, new ListFirstElementComparator());
+                PATHS[code] = paths;
+                codeByConnections.putIfAbsent(connectionKey(paths), code);
+                ORIENTATION[code] = codeByConnections.get(connectionKey(paths));
+                if (ORIENTATION[code] == code) {
+                    DISTINCT_ROTATIONS[id]++;
+                }
+            }
+        }
+    }
+
+    private final int id;
+    private int rotation;
 
     public static final Map<Integer, Integer> neighborIndex = new HashMap<Integer, Integer>() {{
         put(0, 5);
@@ -16,6 +94,9 @@ public class Tile {
         put(7, 2);
     }};
 
+    // same as neighborIndex, for lookups without boxing
+    public static final int[] NEIGHBOR_INDEX = new int[] {5, 4, 7, 6, 1, 0, 3, 2};
+
     public Tile(int[][] paths) {
         if (paths.length != 4 || paths[0].length != 2) {
             throw new IllegalArgumentException("Paths is not a 4 x 2 matrix");
@@ -23,15 +104,62 @@ public class Tile {
         if (!legalPaths(paths)) {
             throw new IllegalArgumentException("Paths invalid");
         }
-        this.paths = new int[4][2];
-        for (int i = 0; i < paths.length; i++) {
-            this.paths[i][0] = paths[i][0];
-            this.paths[i][1] = paths[i][1];
+        // every legal 4 x 2 matrix is a rotation of exactly one of the 35 tiles
+        int code = codeByConnections.get(connectionKey(paths));
+        this.id = code / 4;
+        this.rotation = code % 4;
+    }
+
+    /**
+     * Create the tile with the given id, rotated clockwise the given number of times
+     * @param id tile id from 0 to 34
+     * @param rotation number of clockwise rotations from 0 to 3
+     */
+    public Tile(int id, int rotation) {
+        if (id < 0 || id >= NUM_TILES || rotation < 0 || rotation > 3) {
+            throw new IllegalArgumentException("Invalid tile id or rotation");
         }
+        this.id = id;
+        this.rotation = rotation;
     }
 
+    /**
+     * Get the sorted path matrix of this tile
+     * The matrix is shared by all tiles of the same orientation and must not be modified
+     * @return path matrix
+     */
     public int[][] getPaths() {
-        return paths;
+        return PATHS[getCode()];
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Get the code of this tile, which identifies both the tile and its rotation
+     * @return id * 4 + rotation
+     */
+    public int getCode() {
+        return id * 4 + rotation;
+    }
+
+    /**
+     * Pack the connections of a path matrix into a single integer, 3 bits per port
+     * @param paths a legal path matrix
+     * @return key that is equal for all path matrices with the same connections
+     */
+    private static int connectionKey(int[][] paths) {
+        int key = 0;
+        for (int[] path : paths) {
+            key |= path[1] << (3 * path[0]);
+            key |= path[0] << (3 * path[1]);
+        }
+        return key;
     }
 
     /**
@@ -40,38 +168,22 @@ public class Tile {
      * @return true if the path is valid
      */
     private boolean legalPaths(int[][] paths) {
-        HashSet<Integer> count = new HashSet<>();
+        int count = 0;
         for (int[] path : paths){
-            if (path[0] < 0 || path[0] > 7 || path[1] < 0 || path[1] > 7) {
+            if (path.length != 2 || path[0] < 0 || path[0] > 7 || path[1] < 0 || path[1] > 7) {
                 return false;
             }
-            count.add(path[0]);
-            count.add(path[1]);
+            count |= (1 << path[0]) | (1 << path[1]);
         }
-        return count.size() == 8;
+        return count == 0xFF;
     }
 
     /**
      * Rotate a given tile clockwise by 90 degrees
-     * Mutate the path of this tile
+     * Mutate the rotation of this tile
      */
     public void rotateTile() {
-        for (int i = 0; i < paths.length; i++) {
-            paths[i][0] = (paths[i][0] + 2) % 8;
-            paths[i][1] = (paths[i][1] + 2) % 8;
-        }
-        reorderPath();
-    }
-
-    /**
-     * Reorder the path arrays of a given tile; only called once by rotateTile()
-     * e.g. {{2, 6}, {3, 7}, {4, 1}, {5, 0}} -> {{0, 5}, {1, 4}, {2, 6}, {3, 7}}
-     */
-    private void reorderPath() {
-        for (int[] path : paths) {
-            Arrays.sort(path);
-        }
-        Arrays.sort(paths, new ListFirstElementComparator());
+        rotation = (rotation + 1) % 4;
     }
 
     /**
@@ -79,11 +191,7 @@ public class Tile {
      * @return a copy of a given tile
      */
     public Tile copyTile(){
-        int[][] newPaths = new int[paths.length][paths[0].length];
-        for (int i = 0; i < paths.length; i++) {
-            newPaths[i] = Arrays.copyOf(paths[i], paths[i].length);
-        }
-        return new Tile(newPaths);
+        return new Tile(id, rotation);
     }
 
     /**
@@ -92,24 +200,35 @@ public class Tile {
      * @return true if equal; false if not
      */
     public boolean isSamePaths(Tile tile){
-        return Arrays.deepEquals(paths, tile.paths);
+        return isSamePaths(getCode(), tile.getCode());
     }
 
     /**
-     * Check whether two tiles are equal
-     * Both tiles' paths is unchanged / not reordered
+     * Check whether two tile codes have the same paths
+     * @param code a tile code, see getCode()
+     * @param other another tile code
+     * @return true if equal; false if not
+     */
+    public static boolean isSamePaths(int code, int other) {
+        return ORIENTATION[code] == ORIENTATION[other];
+    }
+
+    /**
+     * Get the canonical code of a tile code: the smallest code of the same tile with the same paths
+     * @param code a tile code, see getCode()
+     * @return the canonical code
+     */
+    public static int getOrientation(int code) {
+        return ORIENTATION[code];
+    }
+
+    /**
+     * Check whether two tiles are equal, regardless of their rotations
      * @param tile the tile to be checked against
      * @return true if equal; false if not
      */
     public boolean isSameTile(Tile tile) {
-        Tile inputCopy = tile.copyTile();
-        for (int i = 0; i < paths.length; i++) {
-            inputCopy.rotateTile();
-            if (Arrays.deepEquals(paths, inputCopy.paths)) {
-                return true;
-            }
-        }
-        return false;
+        return id == tile.id;
     }
 
     /**
@@ -118,14 +237,20 @@ public class Tile {
      * @return the end index
      */
     public int getPathEnd(int start) {
-        for (int[] array : paths) {
-            if (start == array[0]) {
-                return array[1];
-            } else if (start == array[1]) {
-                return array[0];
-            }
+        if (start < 0 || start > 7) {
+            throw new IllegalArgumentException("Error: Invalid path start index");
         }
-        throw new IllegalArgumentException("Error: Invalid path start index");
+        return EXITS[getCode() * 8 + start];
+    }
+
+    /**
+     * Given the code of a tile and the starting index of a path, get the end index on the path
+     * @param code tile code, see getCode()
+     * @param start starting index of the path
+     * @return the end index
+     */
+    public static int getPathEnd(int code, int start) {
+        return EXITS[code * 8 + start];
     }
 
     /**
@@ -133,24 +258,23 @@ public class Tile {
      * @return the number of ways it can be placed
      */
     public int countSymmetricPaths(){
-        int count = 1;
-        Tile copy = copyTile();
-        for (int i = 0; i < 3; i++ ){
-            copy.rotateTile();
-            if (!isSamePaths(copy)) {
-                count++;
-            }
-        }
-        // if we have count = 3, it means we have two paths that are different from the original
-        // but these two paths must be the same
-        // so we need to subtract count by 1 to get the number of ways it can be placed
-        return count == 3 ? count - 1 : count;
+        return DISTINCT_ROTATIONS[id];
+    }
+
+    /**
+     * Get the number of ways a tile can be placed, see countSymmetricPaths()
+     * @param id tile id
+     * @return 1, 2 or 4
+     */
+    public static int getDistinctRotations(int id) {
+        return DISTINCT_ROTATIONS[id];
     }
 
     /**
      * Print the tile representation on console
      */
     public void print() {
+        int[][] paths = getPaths();
         System.out.print("{ ");
         for (int i = 0; i < paths.length; i++) {
             System.out.print("{" + paths[i][0] + ", " + paths[i][1] + "}");
@@ -173,10 +297,7 @@ public class Tile {
         // else return 0
         // order is from most symmetric to least symmetric
         public int compare(Tile a, Tile b){
-            if (a.countSymmetricPaths() == b.countSymmetricPaths()){
-                return 0;
-            }
-            return a.countSymmetricPaths() < b.countSymmetricPaths() ? -1 : 1;
+            return Integer.compare(DISTINCT_ROTATIONS[a.id], DISTINCT_ROTATIONS[b.id]);
         }
     }
 
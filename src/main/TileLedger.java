@@ -0,0 +1,90 @@
+package tsuro;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Where each of the 35 tiles of a game currently is: in the draw pile, on a board location,
+ * in the hand of the player of some color, or nowhere
+ *
+ * The server records every move of a tile, so checking a hand only looks at the tiles of that hand.
+ * A ledger rebuilt from a state built by hand, where the same tile can be in several places,
+ * keeps the first place found in the order board, draw pile, hands.
+ */
+class TileLedger {
+
+    static final int NOWHERE = -2;
+    static final int DECK = -1;
+    // hands are located at the color of the player, 0 to 7; board locations follow
+    private static final int BOARD = 8;
+
+    private final int[] locations = new int[Tile.NUM_TILES];
+
+    TileLedger() {
+        Arrays.fill(locations, NOWHERE);
+    }
+
+    /**
+     * Record every tile of a game state, forgetting anything recorded before
+     * @param board the board
+     * @param drawPile the draw pile
+     * @param sPlayers the players holding tiles
+     */
+    void rebuild(Board board, Deck drawPile, List<SPlayer> sPlayers) {
+        Arrays.fill(locations, NOWHERE);
+        for (int x = 0; x < board.SIZE; x++) {
+            for (int y = 0; y < board.SIZE; y++) {
+                Tile tile = board.getTile(x, y);
+                if (tile != null) {
+                    recordFirst(tile, BOARD + x * board.SIZE + y);
+                }
+            }
+        }
+        for (int i = 0; i < drawPile.size(); i++) {
+            recordFirst(drawPile.get(i), DECK);
+        }
+        for (SPlayer sp : sPlayers) {
+            for (Tile tile : sp.getHand()) {
+                recordFirst(tile, sp.getToken().getColor());
+            }
+        }
+    }
+
+    /**
+     * Record every tile where another ledger has it
+     * @param other the ledger to copy
+     */
+    void copyFrom(TileLedger other) {
+        System.arraycopy(other.locations, 0, locations, 0, locations.length);
+    }
+
+    private void recordFirst(Tile tile, int location) {
+        if (locations[tile.getId()] == NOWHERE) {
+            locations[tile.getId()] = location;
+        }
+    }
+
+    void toDeck(Tile tile) {
+        locations[tile.getId()] = DECK;
+    }
+
+    void toHand(Tile tile, int color) {
+        locations[tile.getId()] = color;
+    }
+
+    void toBoard(Tile tile, int x, int y) {
+        locations[tile.getId()] = BOARD + x * 6 + y;
+    }
+
+    int getLocation(Tile tile) {
+        return locations[tile.getId()];
+    }
+
+    static boolean isOnBoard(int location) {
+        return location >= BOARD;
+    }
+
+    static boolean isInHand(int location) {
+        return location >= 0 && location < BOARD;
+    }
+}
@@ -47,6 +47,48 @@ public class Token {
 
     public void setPosition(int[] position) { this.position = position; }
 
+    /**
+     * Pack position and index on tile of this token into a single integer
+     * @return packed token position, see Token.pack(int, int, int)
+     */
+    public int pack() {
+        return pack(position[0], position[1], indexOnTile);
+    }
+
+    /**
+     * Pack a token position into a single integer, 3 bits each for x + 1, y + 1 and index on tile
+     * so that starting positions off the board can be represented as well
+     * @param x x-coordinate from -1 to 6
+     * @param y y-coordinate from -1 to 6
+     * @param indexOnTile index on tile from 0 to 7
+     * @return packed token position
+     */
+    public static int pack(int x, int y, int indexOnTile) {
+        return ((x + 1) << 6) | ((y + 1) << 3) | indexOnTile;
+    }
+
+    public static int packedX(int packed) {
+        return (packed >> 6) - 1;
+    }
+
+    public static int packedY(int packed) {
+        return ((packed >> 3) & 7) - 1;
+    }
+
+    public static int packedIndex(int packed) {
+        return packed & 7;
+    }
+
+    /**
+     * Create a token from a packed token position
+     * @param color color of the token
+     * @param packed packed token position
+     * @return a new token
+     */
+    public static Token fromPacked(int color, int packed) {
+        return new Token(color, new int[]{packedX(packed), packedY(packed)}, packedIndex(packed));
+    }
+
     /**
      * Check whether two tokens are the same based on color
      * @param t a token to be checked against
@@ -104,10 +146,23 @@ public class Token {
      * @return true if on the edge; false if not
      */
     public boolean isOffBoard() {
-        return (indexOnTile == 0 || indexOnTile == 1) && position[1] == 0 ||
-                (indexOnTile == 2 || indexOnTile == 3) && position[0] == 5 ||
-                (indexOnTile == 4 || indexOnTile == 5) && position[1] == 5 ||
-                (indexOnTile == 6 || indexOnTile == 7) && position[0] == 0;
+        return isOffBoard(position[0], position[1], indexOnTile);
+    }
+
+    /**
+     * Check whether a packed token position is on the edge of the board
+     * @param packed packed token position
+     * @return true if on the edge; false if not
+     */
+    public static boolean isOffBoard(int packed) {
+        return isOffBoard(packedX(packed), packedY(packed), packedIndex(packed));
+    }
+
+    private static boolean isOffBoard(int x, int y, int indexOnTile) {
+        return (indexOnTile == 0 || indexOnTile == 1) && y == 0 ||
+                (indexOnTile == 2 || indexOnTile == 3) && x == 5 ||
+                (indexOnTile == 4 || indexOnTile == 5) && y == 5 ||
+                (indexOnTile == 6 || indexOnTile == 7) && x == 0;
     }
 
     /**
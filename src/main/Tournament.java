@@ -0,0 +1,258 @@
+package tsuro;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Headless tournament between machine player strategies
+ *
+ * Every game is played by its own Server without any network or console output, so games run in parallel
+ * on a pool of threads. Seat order and draw pile are shuffled for every game, and wins, appearances,
+ * throughput and the latencies of every game are aggregated over the whole tournament, with playTurn
+ * latencies by strategy. Every game is seeded from the seed of the tournament, so a tournament between
+ * strategies without a time budget plays the same games for the same seed.
+ */
+public class Tournament {
+
+    // registered strategies, by short name; each factory creates a new player from a player name
+    private static final Map<String, Function<String, APlayer>> STRATEGIES = new LinkedHashMap<>();
+
+    static {
+        register("R", MPlayerRandom::new);
+        register("MS", MPlayerMostSym::new);
+        register("LS", MPlayerLeastSym::new);
+        register("MC", MPlayerMonteCarlo::new);
+        register("EX", MPlayerExpectimax::new);
+    }
+
+    /**
+     * Make a strategy available to tournaments
+     * @param name short name of the strategy
+     * @param factory creates a player of the strategy given the player name
+     */
+    public static synchronized void register(String name, Function<String, APlayer> factory) {
+        STRATEGIES.put(name, factory);
+    }
+
+    public static synchronized List<String> getStrategyNames() {
+        return new ArrayList<>(STRATEGIES.keySet());
+    }
+
+    private static synchronized Function<String, APlayer> getFactory(String name) {
+        Function<String, APlayer> factory = STRATEGIES.get(name);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown strategy: " + name);
+        }
+        return factory;
+    }
+
+    private final List<String> seats;
+    private final int numGames;
+    private final int numThreads;
+    private final long seed;
+
+    // per strategy counters, in the order of the strategies in the seats
+    private final Map<String, AtomicLong> wins = new LinkedHashMap<>();
+    private final Map<String, AtomicLong> appearances = new LinkedHashMap<>();
+    private final AtomicLong gamesPlayed = new AtomicLong();
+    private final AtomicLong turnsPlayed = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final Latencies latencies = new Latencies();
+    private long elapsedNanos;
+    private volatile BiConsumer<Long, GameState> turnListener;
+
+    /**
+     * @param seats the strategy of every seat of a game, 2 to 8 seats
+     * @param numGames number of games to play
+     * @param numThreads number of games played at the same time
+     * @param seed seed of the seat order, draw piles and machine players of the games
+     */
+    public Tournament(List<String> seats, int numGames, int numThreads, long seed) {
+        if (seats.size() < 2 || seats.size() > 8) {
+            throw new IllegalArgumentException("Number of players should be between 2 and 8");
+        }
+        if (numGames < 0 || numThreads < 1) {
+            throw new IllegalArgumentException("Invalid number of games or threads");
+        }
+        for (String strategy : seats) {
+            getFactory(strategy);
+            wins.put(strategy, new AtomicLong());
+            appearances.put(strategy, new AtomicLong());
+        }
+        this.seats = new ArrayList<>(seats);
+        this.numGames = numGames;
+        this.numThreads = numThreads;
+        this.seed = seed;
+    }
+
+    /**
+     * Tell a listener the state of every game after every turn, e.g. to log the games or to replay them
+     * @param listener called with the seed of the game and its state, on the thread playing the game and in
+     *                 turn order for each game; null for none
+     */
+    public void setTurnListener(BiConsumer<Long, GameState> listener) {
+        this.turnListener = listener;
+    }
+
+    /**
+     * Play all games of the tournament and wait for them to finish
+     */
+    public void run() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        List<Future<?>> games = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < numGames; i++) {
+                long gameSeed = seed + i;
+                games.add(pool.submit(() -> playOneGame(gameSeed)));
+            }
+            for (Future<?> game : games) {
+                try {
+                    game.get();
+                } catch (ExecutionException e) {
+                    errors.incrementAndGet();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Play a single game with a shuffled seat order and draw pile and record its result
+     * @param gameSeed seed of the seat order, of the draw pile and of the random choices of the players
+     */
+    private void playOneGame(long gameSeed) {
+        Random random = new Random(gameSeed);
+        List<String> order = new ArrayList<>(seats);
+        Collections.shuffle(order, random);
+        List<APlayer> players = new ArrayList<>();
+        Map<String, String> strategyOfPlayer = new LinkedHashMap<>();
+        for (int i = 0; i < order.size(); i++) {
+            String name = order.get(i) + i;
+            APlayer player = getFactory(order.get(i)).apply(name);
+            if (player instanceof MPlayer) {
+                ((MPlayer) player).setRandom(new Random(random.nextLong()));
+            }
+            players.add(player);
+            strategyOfPlayer.put(name, order.get(i));
+        }
+
+        Server server = new Server(new Deck(random));
+        BiConsumer<Long, GameState> listener = turnListener;
+        if (listener != null) {
+            server.setTurnListener(state -> listener.accept(gameSeed, state));
+        }
+        List<String> winningStrategies = new ArrayList<>();
+        try {
+            for (SPlayer winner : server.playGame(players)) {
+                winningStrategies.add(strategyOfPlayer.get(winner.getPlayer().getName()));
+            }
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            return;
+        }
+
+        for (String strategy : order) {
+            appearances.get(strategy).incrementAndGet();
+        }
+        for (String strategy : winningStrategies) {
+            wins.get(strategy).incrementAndGet();
+        }
+        turnsPlayed.addAndGet(server.turnCount);
+        gamesPlayed.incrementAndGet();
+        for (String phase : server.latencies.getPhases()) {
+            String name = phase;
+            if (phase.startsWith(Latencies.PLAY_TURN)) {
+                name = Latencies.PLAY_TURN + strategyOfPlayer.get(Latencies.playerOf(phase));
+            }
+            latencies.get(name).add(server.latencies.get(phase));
+        }
+    }
+
+    public long getGamesPlayed() {
+        return gamesPlayed.get();
+    }
+
+    public long getTurnsPlayed() {
+        return turnsPlayed.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * Get the latencies of all games played so far, with playTurn latencies named by strategy
+     * @return latency histograms by phase
+     */
+    public Latencies getLatencies() {
+        return latencies;
+    }
+
+    public long getWins(String strategy) {
+        return wins.get(strategy).get();
+    }
+
+    public long getAppearances(String strategy) {
+        return appearances.get(strategy).get();
+    }
+
+    /**
+     * Get the share of the appearances of a strategy that ended in a win; shared wins count as wins
+     * @param strategy short name of the strategy
+     * @return win rate between 0 and 1
+     */
+    public double getWinRate(String strategy) {
+        long played = getAppearances(strategy);
+        return played == 0 ? 0 : (double) getWins(strategy) / played;
+    }
+
+    /**
+     * Print win rates and throughput of the tournament to console
+     */
+    public void printReport() {
+        double seconds = elapsedNanos / 1e9;
+        System.out.println("Tournament: games = " + getGamesPlayed() + ", errors = " + getErrors()
+                + ", threads = " + numThreads);
+        for (String strategy : wins.keySet()) {
+            System.out.printf("Tournament: %s wins %d / %d (%.2f%%)%n", strategy, getWins(strategy),
+                    getAppearances(strategy), getWinRate(strategy) * 100);
+        }
+        System.out.printf("Tournament: %.2f s, %.1f games/s, %.1f turns/s%n", seconds,
+                getGamesPlayed() / seconds, getTurnsPlayed() / seconds);
+        latencies.print("Tournament: latency of ");
+    }
+
+    // CML arguments:
+    // 0: Number_of_Games,
+    // 1: Number_of_Threads,
+    // 2..: Strategy of each seat, one of R, MS, LS, MC, EX
+    public static void main(String[] args) {
+        int numGames = Integer.parseInt(args[0]);
+        int numThreads = Integer.parseInt(args[1]);
+        List<String> seats = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            seats.add(args[i]);
+        }
+        try {
+            Tournament tournament = new Tournament(seats, numGames, numThreads, System.nanoTime());
+            tournament.run();
+            tournament.printReport();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
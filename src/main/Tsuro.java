@@ -11,7 +11,7 @@ public class Tsuro {
     // 5: Number_of_RemotePlayer
     public static void main(String[] args) {
         // start a local host for networked tournament
-        Server server = Server.getInstance();
+        Server server = new Server();
         server.PORT_NUM = Integer.parseInt(args[0]);
         try {
             server.startGame(Integer.parseInt(args[1]),Integer.parseInt(args[2]),Integer.parseInt(args[3]),Integer.parseInt(args[4]),Integer.parseInt(args[5]));
@@ -0,0 +1,340 @@
+package tsuro.parser;
+
+import tsuro.*;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Binary encoding of the messages between RemotePlayer and Admin, an alternative to their XML
+ *
+ * A client offers the binary protocol by answering get-name, which is always XML, with
+ * <player-name protocol="binary">str</player-name>. A server that supports it accepts by sending every
+ * later message, and expecting every answer, as a frame: a 4 byte big-endian payload length, then the
+ * payload. A server that does not keeps sending lines of XML; the first byte of its next message tells
+ * the client which, as XML starts with '<' and a frame length with 0.
+ *
+ * Every payload starts with its message type, followed by:
+ * - initialize: color, number of colors, colors
+ * - place-pawn: board
+ * - play-turn: board, number of tiles, tile codes, tiles left in the deck
+ * - end-game: board, number of colors, colors
+ * - player-name: the name in UTF-8
+ * - void: nothing
+ * - pawn-loc: packed token position, 2 bytes
+ * - tile: tile code
+ * A board is the number of tiles, then the location x * 6 + y and the code of every tile, then the number
+ * of pawns, then the color and 2 byte packed position of every pawn. A tile code is id * 4 + rotation.
+ * All other numbers are one byte. A play-turn message is at most 102 bytes, where its XML takes kilobytes.
+ *
+ * A client offering protocol="binary-delta" instead gets place-pawn, play-turn and end-game as the
+ * message types ending in _DELTA, whose board is only the change from the last board the client has
+ * acknowledged by answering, see BoardDelta. The client patches the board it holds with it, so a play-turn
+ * is about 20 bytes however full the board is.
+ */
+public class BinaryParser {
+
+    public static final String PROTOCOL = "binary";
+    public static final String DELTA_PROTOCOL = "binary-delta";
+    // longest frame accepted, same as the longest line of XML
+    public static final int MAX_FRAME = 1 << 20;
+
+    public static final byte INITIALIZE = 1;
+    public static final byte PLACE_PAWN = 2;
+    public static final byte PLAY_TURN = 3;
+    public static final byte END_GAME = 4;
+    public static final byte PLAYER_NAME = 5;
+    public static final byte VOID = 6;
+    public static final byte PAWN_LOC = 7;
+    public static final byte TILE = 8;
+    public static final byte PLACE_PAWN_DELTA = 9;
+    public static final byte PLAY_TURN_DELTA = 10;
+    public static final byte END_GAME_DELTA = 11;
+
+    // enough for every message but player-name
+    private static final int MAX_MESSAGE = 128;
+
+    // ****************************************************************************************
+    // *********************** Build Messages for Outgoing Inputs to Admin ********************
+    // ****************************************************************************************
+
+    public static byte[] buildInitialize(int color, List<Integer> colors) {
+        ByteBuffer out = ByteBuffer.allocate(MAX_MESSAGE);
+        out.put(INITIALIZE);
+        out.put((byte) color);
+        writeColors(out, colors);
+        return toBytes(out);
+    }
+
+    public static byte[] buildPlacePawn(Board board) {
+        ByteBuffer out = ByteBuffer.allocate(MAX_MESSAGE);
+        out.put(PLACE_PAWN);
+        writeBoard(out, board);
+        return toBytes(out);
+    }
+
+    public static byte[] buildPlayTurn(Board board, Collection<Tile> tiles, int tilesLeft) {
+        ByteBuffer out = ByteBuffer.allocate(MAX_MESSAGE);
+        out.put(PLAY_TURN);
+        writeBoard(out, board);
+        writeTiles(out, tiles);
+        out.put((byte) tilesLeft);
+        return toBytes(out);
+    }
+
+    public static byte[] buildEndGame(Board board, Collection<Integer> colors) {
+        ByteBuffer out = ByteBuffer.allocate(MAX_MESSAGE);
+        out.put(END_GAME);
+        writeBoard(out, board);
+        writeColors(out, colors);
+        return toBytes(out);
+    }
+
+    /**
+     * Build a place-pawn with the change of the board since the board acknowledged by the client
+     * @param delta board of the client, to acknowledge once it has answered
+     */
+    public static byte[] buildPlacePawn(Board board, BoardDelta delta) {
+        ByteBuffer out = ByteBuffer.allocate(MAX_MESSAGE);
+        out.put(PLACE_PAWN_DELTA);
+        delta.write(out, board);
+        return toBytes(out);
+    }
+
+    public static byte[] buildPlayTurn(Board board, Collection<Tile> tiles, int tilesLeft, BoardDelta delta) {
+        ByteBuffer out = ByteBuffer.allocate(MAX_MESSAGE);
+        out.put(PLAY_TURN_DELTA);
+        delta.write(out, board);
+        writeTiles(out, tiles);
+        out.put((byte) tilesLeft);
+        return toBytes(out);
+    }
+
+    public static byte[] buildEndGame(Board board, Collection<Integer> colors, BoardDelta delta) {
+        ByteBuffer out = ByteBuffer.allocate(MAX_MESSAGE);
+        out.put(END_GAME_DELTA);
+        delta.write(out, board);
+        writeColors(out, colors);
+        return toBytes(out);
+    }
+
+    // ****************************************************************************************
+    // ******************** Build Messages for Outgoing Outputs from Admin ********************
+    // ****************************************************************************************
+
+    public static byte[] buildPlayerName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] message = new byte[bytes.length + 1];
+        message[0] = PLAYER_NAME;
+        System.arraycopy(bytes, 0, message, 1, bytes.length);
+        return message;
+    }
+
+    public static byte[] buildVoid() {
+        return new byte[] {VOID};
+    }
+
+    public static byte[] buildPawnLoc(Token token) {
+        ByteBuffer out = ByteBuffer.allocate(3);
+        out.put(PAWN_LOC);
+        out.putShort((short) token.pack());
+        return out.array();
+    }
+
+    public static byte[] buildTile(Tile tile) {
+        return new byte[] {TILE, (byte) tile.getCode()};
+    }
+
+    // ****************************************************************************************
+    // ********************* Decompose Messages from either side ******************************
+    // ****************************************************************************************
+
+    /**
+     * Start reading a message
+     * @param message payload of a frame
+     * @param type the message type expected
+     * @return the rest of the message
+     */
+    public static ByteBuffer read(byte[] message, byte type) {
+        ByteBuffer in = ByteBuffer.wrap(message);
+        if (message.length == 0 || in.get() != type) {
+            throw new IllegalArgumentException("Parse Error: Message is not of type " + type);
+        }
+        return in;
+    }
+
+    /**
+     * Get the type of a message
+     * @param message payload of a frame
+     * @return the message type, e.g. PLAY_TURN
+     */
+    public static byte typeOf(byte[] message) {
+        if (message.length == 0) {
+            throw new IllegalArgumentException("Parse Error: Empty message");
+        }
+        return message[0];
+    }
+
+    public static String fromPlayerName(byte[] message) {
+        read(message, PLAYER_NAME);
+        return new String(message, 1, message.length - 1, StandardCharsets.UTF_8);
+    }
+
+    public static void fromVoid(byte[] message) {
+        read(message, VOID);
+    }
+
+    public static Token fromPawnLoc(byte[] message, int color) {
+        ByteBuffer in = read(message, PAWN_LOC);
+        try {
+            return Token.fromPacked(color, in.getShort() & 0x1FF);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Parse Error: Message too short");
+        }
+    }
+
+    public static Tile fromTile(byte[] message) {
+        ByteBuffer in = read(message, TILE);
+        try {
+            return readTile(in);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Parse Error: Message too short");
+        }
+    }
+
+    /**
+     * Read a board, with a SPlayer without hand for every pawn as BoardParser does
+     */
+    public static Board readBoard(ByteBuffer in) {
+        Board board = new Board();
+        int tiles = in.get() & 0xFF;
+        for (int i = 0; i < tiles; i++) {
+            int location = in.get() & 0xFF;
+            if (location >= board.SIZE * board.SIZE) {
+                throw new IllegalArgumentException("Parse Error: Location off board");
+            }
+            board.placeTile(readTile(in), location / board.SIZE, location % board.SIZE);
+        }
+        int pawns = in.get() & 0xFF;
+        for (int i = 0; i < pawns; i++) {
+            int color = in.get();
+            int packed = in.getShort() & 0x1FF;
+            board.addSPlayer(new SPlayer(Token.fromPacked(color, packed), null));
+        }
+        return board;
+    }
+
+    /**
+     * Patch the board of the client with a delta written by BoardDelta; constant time in the tiles on board
+     * @param board the board of the client, patched in place
+     * @return the patched board, or a new board if the delta resets it
+     */
+    public static Board readBoardDelta(ByteBuffer in, Board board) {
+        if (in.get() != 0) {
+            board = new Board();
+        }
+        int tiles = in.get() & 0xFF;
+        for (int i = 0; i < tiles; i++) {
+            int location = in.get() & 0xFF;
+            if (location >= board.SIZE * board.SIZE) {
+                throw new IllegalArgumentException("Parse Error: Location off board");
+            }
+            board.placeTile(readTile(in), location / board.SIZE, location % board.SIZE);
+        }
+        int pawns = in.get() & 0xFF;
+        for (int i = 0; i < pawns; i++) {
+            int color = in.get();
+            int packed = in.getShort();
+            SPlayer current = null;
+            for (SPlayer sp : board.getSPlayerList()) {
+                if (sp.getToken().getColor() == color) {
+                    current = sp;
+                }
+            }
+            if (packed == -1) {
+                if (current != null) {
+                    board.removeSPlayer(current);
+                }
+            }
+            else if (current != null) {
+                current.updateToken(Token.fromPacked(color, packed & 0x1FF));
+            }
+            else {
+                board.addSPlayer(new SPlayer(Token.fromPacked(color, packed & 0x1FF), null));
+            }
+        }
+        return board;
+    }
+
+    public static List<Tile> readTiles(ByteBuffer in) {
+        int n = in.get() & 0xFF;
+        List<Tile> tiles = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            tiles.add(readTile(in));
+        }
+        return tiles;
+    }
+
+    public static List<Integer> readColors(ByteBuffer in) {
+        int n = in.get() & 0xFF;
+        List<Integer> colors = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            colors.add((int) in.get());
+        }
+        return colors;
+    }
+
+    private static Tile readTile(ByteBuffer in) {
+        int code = in.get() & 0xFF;
+        if (code >= Tile.NUM_TILES * 4) {
+            throw new IllegalArgumentException("Parse Error: Tile code out of range");
+        }
+        return new Tile(code / 4, code % 4);
+    }
+
+    private static void writeBoard(ByteBuffer out, Board board) {
+        int countAt = out.position();
+        out.put((byte) 0);
+        int tiles = 0;
+        for (int x = 0; x < board.SIZE; x++) {
+            for (int y = 0; y < board.SIZE; y++) {
+                Tile tile = board.getBoard()[x][y];
+                if (tile != null) {
+                    out.put((byte) (x * board.SIZE + y));
+                    out.put((byte) tile.getCode());
+                    tiles++;
+                }
+            }
+        }
+        out.put(countAt, (byte) tiles);
+        List<SPlayer> players = board.getSPlayerList();
+        out.put((byte) players.size());
+        for (SPlayer sp : players) {
+            out.put((byte) sp.getToken().getColor());
+            out.putShort((short) sp.getToken().pack());
+        }
+    }
+
+    private static void writeTiles(ByteBuffer out, Collection<Tile> tiles) {
+        out.put((byte) tiles.size());
+        for (Tile tile : tiles) {
+            out.put((byte) tile.getCode());
+        }
+    }
+
+    private static void writeColors(ByteBuffer out, Collection<Integer> colors) {
+        out.put((byte) colors.size());
+        for (int color : colors) {
+            out.put((byte) color);
+        }
+    }
+
+    private static byte[] toBytes(ByteBuffer out) {
+        return Arrays.copyOf(out.array(), out.position());
+    }
+}
@@ -0,0 +1,204 @@
+package tsuro.parser;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import tsuro.*;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryParserTest {
+    private static Parser parser;
+
+    @BeforeAll
+    public static void beforeAll() throws Exception {
+        DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        parser = new Parser(db);
+    }
+
+    // Board with 3 tiles and 2 tokens, one of them at a starting position off board
+    private static Board board() {
+        Board board = new Board();
+        board.placeTile(new Tile(0, 0), 0, 5);
+        board.placeTile(new Tile(7, 1), 2, 3);
+        board.placeTile(new Tile(34, 3), 5, 0);
+        board.addSPlayer(new SPlayer(new Token(1, new int[] {2, 3}, 4), null));
+        board.addSPlayer(new SPlayer(new Token(6, new int[] {-1, 2}, 3), null));
+        return board;
+    }
+
+    private static void assertSameBoard(Board expected, Board board) {
+        for (int x = 0; x < 6; x++) {
+            for (int y = 0; y < 6; y++) {
+                Tile tile = expected.getTile(x, y);
+                if (tile == null) {
+                    assertNull(board.getTile(x, y), "Tile at [" + x + ", " + y + "] should be empty");
+                }
+                else {
+                    assertEquals(tile.getCode(), board.getTile(x, y).getCode(), "Tile at [" + x + ", " + y + "]");
+                }
+            }
+        }
+        assertEquals(expected.getSPlayerList().size(), board.getSPlayerList().size());
+        for (int i = 0; i < expected.getSPlayerList().size(); i++) {
+            assertTrue(expected.getSPlayerList().get(i).getToken().isSameToken(board.getSPlayerList().get(i).getToken()),
+                    "Token " + i + " should be the same");
+        }
+    }
+
+    @Test
+    public void initializeTest() {
+        byte[] message = BinaryParser.buildInitialize(3, Arrays.asList(0, 3, 7));
+        assertEquals(BinaryParser.INITIALIZE, BinaryParser.typeOf(message));
+        ByteBuffer in = BinaryParser.read(message, BinaryParser.INITIALIZE);
+        assertEquals(3, in.get());
+        assertEquals(Arrays.asList(0, 3, 7), BinaryParser.readColors(in));
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    public void placePawnTest() {
+        Board board = board();
+        byte[] message = BinaryParser.buildPlacePawn(board);
+        assertSameBoard(board, BinaryParser.readBoard(BinaryParser.read(message, BinaryParser.PLACE_PAWN)));
+        // type, tiles, 2 bytes each, pawns, 3 bytes each
+        assertEquals(1 + 1 + 3 * 2 + 1 + 2 * 3, message.length);
+    }
+
+    @Test
+    public void playTurnTest() {
+        Board board = board();
+        List<Tile> hand = Arrays.asList(new Tile(3, 2), new Tile(12, 0));
+        byte[] message = BinaryParser.buildPlayTurn(board, hand, 27);
+        ByteBuffer in = BinaryParser.read(message, BinaryParser.PLAY_TURN);
+        assertSameBoard(board, BinaryParser.readBoard(in));
+        List<Tile> tiles = BinaryParser.readTiles(in);
+        assertEquals(2, tiles.size());
+        assertTrue(tiles.get(0).isSameTile(hand.get(0)) && tiles.get(0).getRotation() == 2);
+        assertTrue(tiles.get(1).isSameTile(hand.get(1)));
+        assertEquals(27, in.get() & 0xFF);
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    public void endGameTest() {
+        Board board = board();
+        byte[] message = BinaryParser.buildEndGame(board, Collections.singleton(6));
+        ByteBuffer in = BinaryParser.read(message, BinaryParser.END_GAME);
+        assertSameBoard(board, BinaryParser.readBoard(in));
+        assertEquals(Collections.singletonList(6), BinaryParser.readColors(in));
+    }
+
+    @Test
+    public void answersTest() {
+        assertEquals("J\u00fcrgen", BinaryParser.fromPlayerName(BinaryParser.buildPlayerName("J\u00fcrgen")));
+        BinaryParser.fromVoid(BinaryParser.buildVoid());
+        Token token = new Token(5, new int[] {6, 1}, 6);
+        assertTrue(token.isSameToken(BinaryParser.fromPawnLoc(BinaryParser.buildPawnLoc(token), 5)));
+        Tile tile = new Tile(20, 3);
+        assertEquals(tile.getCode(), BinaryParser.fromTile(BinaryParser.buildTile(tile)).getCode());
+    }
+
+    @Test
+    public void invalidMessageTest() {
+        assertThrows(IllegalArgumentException.class, () -> BinaryParser.fromVoid(BinaryParser.buildTile(new Tile(0, 0))));
+        assertThrows(IllegalArgumentException.class, () -> BinaryParser.fromTile(new byte[] {BinaryParser.TILE, (byte) 140}));
+        assertThrows(IllegalArgumentException.class, () -> BinaryParser.fromTile(new byte[] {BinaryParser.TILE}));
+        assertThrows(IllegalArgumentException.class, () -> BinaryParser.typeOf(new byte[0]));
+    }
+
+    // A delta carries only what changed since the board acknowledged, and patches the board of the client
+    @Test
+    public void deltaTest() {
+        BoardDelta delta = new BoardDelta();
+        Board board = board();
+        byte[] message = BinaryParser.buildPlacePawn(board, delta);
+        Board client = BinaryParser.readBoardDelta(BinaryParser.read(message, BinaryParser.PLACE_PAWN_DELTA), new Board());
+        assertSameBoard(board, client);
+        // not acknowledged yet, so sent again
+        assertEquals(message.length, BinaryParser.buildPlacePawn(board, delta).length);
+        delta.acknowledge();
+
+        board.placeTile(new Tile(12, 2), 2, 4);
+        board.getSPlayerList().get(0).updateToken(new Token(1, new int[] {2, 4}, 5));
+        List<Tile> hand = Collections.singletonList(new Tile(3, 0));
+        message = BinaryParser.buildPlayTurn(board, hand, 10, delta);
+        ByteBuffer in = BinaryParser.read(message, BinaryParser.PLAY_TURN_DELTA);
+        Board patched = BinaryParser.readBoardDelta(in, client);
+        assertSame(client, patched);
+        assertSameBoard(board, client);
+        assertEquals(1, BinaryParser.readTiles(in).size());
+        assertEquals(10, in.get() & 0xFF);
+        assertFalse(in.hasRemaining());
+        // type, reset, 1 tile, 1 pawn, hand of 1, tiles left
+        assertEquals(1 + 1 + 1 + 2 + 1 + 3 + 1 + 1 + 1, message.length);
+        delta.acknowledge();
+
+        // nothing changed
+        message = BinaryParser.buildEndGame(board, Collections.singleton(1), delta);
+        assertEquals(1 + 1 + 1 + 1 + 1 + 1, message.length);
+        in = BinaryParser.read(message, BinaryParser.END_GAME_DELTA);
+        assertSameBoard(board, BinaryParser.readBoardDelta(in, client));
+        assertEquals(Collections.singletonList(1), BinaryParser.readColors(in));
+        delta.acknowledge();
+
+        // a pawn removed
+        board.removeSPlayer(board.getSPlayerList().get(1));
+        message = BinaryParser.buildEndGame(board, Collections.singleton(1), delta);
+        assertSameBoard(board, BinaryParser.readBoardDelta(BinaryParser.read(message, BinaryParser.END_GAME_DELTA), client));
+        delta.acknowledge();
+
+        // a new game starts from an empty board
+        Board next = new Board();
+        next.addSPlayer(new SPlayer(new Token(3, new int[] {-1, 0}, 2), null));
+        message = BinaryParser.buildPlacePawn(next, delta);
+        patched = BinaryParser.readBoardDelta(BinaryParser.read(message, BinaryParser.PLACE_PAWN_DELTA), client);
+        assertNotSame(client, patched);
+        assertSameBoard(next, patched);
+    }
+
+    // The protocol is offered in player-name; without it a player keeps to XML
+    @Test
+    public void handshakeTest() throws Exception {
+        Document offer = parser.stringToDocument(parser.documentToString(
+                parser.buildPlayerNameXML("P", BinaryParser.PROTOCOL)));
+        assertEquals("P", parser.fromGetNameXML(offer));
+        assertEquals(BinaryParser.PROTOCOL, parser.fromGetNameProtocolXML(offer));
+        Document plain = parser.stringToDocument(parser.documentToString(parser.buildPlayerNameXML("P")));
+        assertEquals("", parser.fromGetNameProtocolXML(plain));
+    }
+
+    // A play-turn on a full board takes about a hundred bytes, a few percent of its XML
+    @Test
+    public void sizeTest() throws Exception {
+        Board board = new Board();
+        int id = 0;
+        for (int x = 0; x < 6; x++) {
+            for (int y = 0; y < 6 && id < 34; y++) {
+                board.placeTile(new Tile(id++, 0), x, y);
+            }
+        }
+        for (int color = 0; color < 8; color++) {
+            board.addSPlayer(new SPlayer(new Token(color, new int[] {5, 5}, color), null));
+        }
+        Set<Tile> hand = new HashSet<>(Collections.singletonList(new Tile(34, 0)));
+        byte[] binary = BinaryParser.buildPlayTurn(board, hand, 0);
+        String xml = parser.documentToString(parser.buildPlayTurnXML(board, hand, 0));
+        assertTrue(binary.length <= 102, "Binary play-turn takes " + binary.length + " bytes");
+        assertTrue(binary.length * 20 < xml.length(), "XML play-turn takes " + xml.length() + " bytes");
+
+        // with deltas, only the last tile and the pawns it moved
+        BoardDelta delta = new BoardDelta();
+        board.deleteTile(5, 3);
+        BinaryParser.buildPlayTurn(board, hand, 0, delta);
+        delta.acknowledge();
+        board.placeTile(new Tile(33, 0), 5, 3);
+        byte[] change = BinaryParser.buildPlayTurn(board, hand, 0, delta);
+        assertTrue(change.length <= 10, "Delta play-turn takes " + change.length + " bytes");
+    }
+}
@@ -0,0 +1,107 @@
+package tsuro.parser;
+
+import tsuro.Board;
+import tsuro.SPlayer;
+import tsuro.Tile;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The board a client of the delta protocol holds, as last acknowledged by it, so that the next message
+ * only carries what changed since: the tiles placed and the pawns moved, added or removed
+ *
+ * One per client. A delta written by BinaryParser becomes the state of the client once the client has
+ * answered the message carrying it, see acknowledge().
+ */
+public class BoardDelta {
+
+    // tile code by location x * 6 + y, and packed position by color; -1 for none
+    private final int[] tiles = new int[36];
+    private final int[] pawns = new int[8];
+    // the board of the last delta written, not yet acknowledged
+    private final int[] sentTiles = new int[36];
+    private final int[] sentPawns = new int[8];
+
+    public BoardDelta() {
+        Arrays.fill(tiles, -1);
+        Arrays.fill(pawns, -1);
+        Arrays.fill(sentTiles, -1);
+        Arrays.fill(sentPawns, -1);
+    }
+
+    /**
+     * Take the board of the last delta written as the board of the client, once the client has answered
+     */
+    public void acknowledge() {
+        System.arraycopy(sentTiles, 0, tiles, 0, tiles.length);
+        System.arraycopy(sentPawns, 0, pawns, 0, pawns.length);
+    }
+
+    /**
+     * Write the changes from the acknowledged board to a board: a reset flag, then the number of tiles,
+     * then the location and code of every tile, then the number of pawns, then the color and 2 byte packed
+     * position of every pawn, -1 for a pawn removed. The client starts from an empty board when the reset
+     * flag is 1, which is only needed when a tile it holds is gone, e.g. when a new game starts.
+     */
+    void write(ByteBuffer out, Board board) {
+        boolean reset = false;
+        for (int x = 0; x < board.SIZE && !reset; x++) {
+            for (int y = 0; y < board.SIZE; y++) {
+                int location = x * board.SIZE + y;
+                Tile tile = board.getBoard()[x][y];
+                if (tiles[location] != -1 && (tile == null || tile.getCode() != tiles[location])) {
+                    reset = true;
+                    break;
+                }
+            }
+        }
+        int[] from = reset ? new int[36] : tiles;
+        if (reset) {
+            Arrays.fill(from, -1);
+        }
+        out.put((byte) (reset ? 1 : 0));
+
+        int countAt = out.position();
+        out.put((byte) 0);
+        int n = 0;
+        for (int x = 0; x < board.SIZE; x++) {
+            for (int y = 0; y < board.SIZE; y++) {
+                int location = x * board.SIZE + y;
+                Tile tile = board.getBoard()[x][y];
+                sentTiles[location] = tile == null ? -1 : tile.getCode();
+                if (sentTiles[location] != from[location]) {
+                    out.put((byte) location);
+                    out.put((byte) sentTiles[location]);
+                    n++;
+                }
+            }
+        }
+        out.put(countAt, (byte) n);
+
+        countAt = out.position();
+        out.put((byte) 0);
+        n = 0;
+        Arrays.fill(sentPawns, -1);
+        // in the order of the board, so that the client adds new pawns in the same order
+        List<SPlayer> players = board.getSPlayerList();
+        for (SPlayer sp : players) {
+            int color = sp.getToken().getColor();
+            sentPawns[color] = sp.getToken().pack();
+            if (reset || sentPawns[color] != pawns[color]) {
+                out.put((byte) color);
+                out.putShort((short) sentPawns[color]);
+                n++;
+            }
+        }
+        for (int color = 0; color < pawns.length; color++) {
+            if (!reset && pawns[color] != -1 && sentPawns[color] == -1) {
+                out.put((byte) color);
+                out.putShort((short) -1);
+                n++;
+            }
+        }
+        out.put(countAt, (byte) n);
+    }
+}
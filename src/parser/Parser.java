@@ -186,6 +186,19 @@ public class Parser {
         return doc;
     }
 
+    /**
+     * Get XML of player-name offering another protocol for the rest of the game, see BinaryParser
+     * @param s player's name in string
+     * @param protocol the protocol offered, e.g. BinaryParser.PROTOCOL
+     * @return a document with the XML of player-name in <player-name protocol="protocol">str</player-name>
+     * format as its first child
+     */
+    public Document buildPlayerNameXML(String s, String protocol) {
+        Document doc = buildPlayerNameXML(s);
+        ((Element) doc.getFirstChild()).setAttribute("protocol", protocol);
+        return doc;
+    }
+
     /**
      * Get XML of void
      * @return a document with the XML of void in <void></void>
@@ -263,13 +276,24 @@ public class Parser {
         return doc.getFirstChild().getTextContent();
     }
 
+    /**
+     * parse the protocol offered in XML of player-name(response to GetName)
+     * @param doc a document with the XML of player-name in <player-name protocol="protocol">str</player-name>
+     * format as its first child
+     * @return protocol; empty if none is offered, which means XML
+     */
+    public String fromGetNameProtocolXML(Document doc) {
+        return ((Element) doc.getFirstChild()).getAttribute("protocol");
+    }
+
     /**
      * parse XML of pawn-loc(response to PlacePawn)
      * @param doc a document with the XML of pawn-loc in <pawn-loc>hv n n</pawn-loc>
      * format as its first child
+     * @param board the board of the game the pawn is placed on
      * @return pair with position array as first and index as second
      */
-    public Pair<int[], Integer> fromPlacePawnXML(Document doc) {
+    public Pair<int[], Integer> fromPlacePawnXML(Document doc, Board board) {
         Node pawnLoc = doc.getFirstChild();
         if (!pawnLoc.getNodeName().equals("pawn-loc")) {
             throw new IllegalArgumentException("Parse Error: Cannot find <pawn-loc></pawn-loc>");
@@ -283,7 +307,7 @@ public class Parser {
         int[] oldPos = pawnParser.getOldPos(Integer.parseInt(index1.getTextContent()),
                                             Integer.parseInt(index2.getTextContent()),
                                             horizontal,
-                                            Server.getInstance().board);
+                                            board);
 
         return new Pair<>(new int[] {oldPos[0], oldPos[1]}, oldPos[2]);
     }
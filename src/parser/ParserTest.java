@@ -366,11 +366,7 @@ public class ParserTest {
         SPlayer sp = new SPlayer(token, null);
         board.addSPlayer(sp);
 
-
-        Server server = Server.getInstance();
-        server.setState(board, null, null, null, null);
-
-        Pair<int[], Integer> pair = parser.fromPlacePawnXML(doc);
+        Pair<int[], Integer> pair = parser.fromPlacePawnXML(doc, board);
 
         assertArrayEquals(new int[]{0,0}, pair.first, "Failed to build position from XML");
         assertEquals(new Integer(4), pair.second, "Failed to build indexOnTile from XML");
@@ -1,6 +1,7 @@
 package tsuro;
 import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -30,6 +31,70 @@ public class BoardTest {
         assertEquals(tile2, b.getTile(3, 5), "Error: Tile2 not at [3, 5]");
     }
 
+    @Test
+    public void occupancyTest() {
+        b = new Board();
+        Tile tile1 = new Tile(new int[][]{{0, 7}, {1, 4}, {2, 5}, {3, 6}});
+        b.placeTile(tile1, 3, 5);
+        assertTrue(b.containsTile(tile1), "Error: Tile1 should be on board");
+        assertTrue(b.containsTile(new Tile(tile1.getId(), 2)), "Error: Rotated tile1 should be on board");
+        b.deleteTile(3, 5);
+        assertFalse(b.containsTile(tile1), "Error: Tile1 should not be on board");
+        assertEquals(0, b.getTileCount());
+
+        int count = 0;
+        for (int x = 0; x < 6; x++) {
+            for (int y = 0; y < 6 && count < Tile.NUM_TILES; y++) {
+                assertFalse(b.isFull(), "Error: Board should not be full");
+                b.placeTile(new Tile(count++, 0), x, y);
+            }
+        }
+        assertTrue(b.isFull(), "Error: Board should be full");
+        b.deleteTile(0, 0);
+        assertFalse(b.isFull(), "Error: Board should not be full");
+        assertFalse(b.containsTile(new Tile(0, 0)), "Error: Tile 0 should not be on board");
+    }
+
+    @Test
+    public void hashTest() {
+        b = new Board();
+        Board other = new Board();
+        long empty = b.getHash();
+        Tile tile1 = new Tile(3, 1);
+        Tile tile2 = new Tile(20, 2);
+        b.placeTile(tile1, 1, 1);
+        b.placeTile(tile2, 4, 2);
+        other.placeTile(new Tile(20, 2), 4, 2);
+        other.placeTile(new Tile(3, 1), 1, 1);
+        assertEquals(b.getHash(), other.getHash(), "Error: Placement order changed the hash");
+        assertNotEquals(empty, b.getHash(), "Error: Tiles did not change the hash");
+
+        b.deleteTile(1, 1);
+        b.deleteTile(4, 2);
+        assertEquals(empty, b.getHash(), "Error: Deleting tiles did not restore the hash");
+
+        // a tile whose paths look the same after two rotations
+        Tile symmetric = new Tile(new int[][]{{0, 5}, {1, 4}, {2, 7}, {3, 6}});
+        Tile turned = symmetric.copyTile();
+        turned.rotateTile();
+        turned.rotateTile();
+        assertTrue(symmetric.isSamePaths(turned));
+        assertEquals(Board.tileKey(symmetric.getCode(), 0, 0), Board.tileKey(turned.getCode(), 0, 0));
+
+        b.placeTile(tile1, 1, 1);
+        long tilesOnly = b.getHash();
+        Token token = new Token(0, new int[]{2, -1}, 5);
+        b.addSPlayer(new SPlayer(token, new ArrayList<>()));
+        assertEquals(tilesOnly ^ Board.tokenKey(0, token.pack()), b.getHash(), "Error: Token is not hashed");
+        assertEquals(tilesOnly, b.getTileHash());
+        SPlayer sp = b.getSPlayer(0);
+        Token moved = b.simulateMove(token);
+        b.updateToken(sp, moved);
+        assertEquals(tilesOnly ^ Board.tokenKey(0, moved.pack()), b.getHash(), "Error: Move is not hashed");
+        b.removeSPlayer(sp);
+        assertEquals(tilesOnly, b.getHash(), "Error: Removed token is hashed");
+    }
+
     @Test
     public void placeTileThrowExceptionTest() {
         b = new Board();
@@ -85,4 +150,115 @@ public class BoardTest {
         SPlayer sp = new SPlayer(t, null);
         assertThrows(IllegalArgumentException.class, () -> b.removeSPlayer(sp));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void simulateMoveTest() {
+        b = new Board();
+        b.placeTile(new Tile(new int[][]{{0, 3}, {1, 4}, {2, 7}, {5, 6}}), 2, 0);
+        b.placeTile(new Tile(new int[][]{{0, 5}, {1, 4}, {2, 7}, {3, 6}}), 2, 1);
+        b.placeTile(new Tile(new int[][]{{0, 5}, {1, 4}, {2, 7}, {3, 6}}), 2, 2);
+        // token crosses three tiles and stops at the top edge
+        Token token = new Token(0, new int[]{2, 3}, 1);
+        int end = b.simulateMove(token.pack());
+        assertEquals(2, Token.packedX(end), "Error: Wrong x-coordinate after move");
+        assertEquals(0, Token.packedY(end), "Error: Wrong y-coordinate after move");
+        assertEquals(1, Token.packedIndex(end), "Error: Wrong index after move");
+        assertTrue(Token.isOffBoard(end), "Error: Token should be on the edge");
+        assertTrue(Token.fromPacked(0, end).isSameToken(b.simulateMove(token)), "Error: Packed and token moves differ");
+        // token facing an empty location does not move
+        Token still = new Token(1, new int[]{-1, 4}, 2);
+        assertEquals(still.pack(), b.simulateMove(still.pack()), "Error: Token moved without a tile");
+        assertSame(still, b.simulateMove(still), "Error: Token copied without a move");
+    }
+
+    // compare the port graph with tracing paths tile by tile while tiles are placed and deleted randomly
+    @Test
+    public void portGraphTest() {
+        Random rand = new Random(42);
+        for (int game = 0; game < 20; game++) {
+            b = new Board();
+            for (int step = 0; step < 60; step++) {
+                int x = rand.nextInt(6);
+                int y = rand.nextInt(6);
+                if (b.getTile(x, y) == null) {
+                    b.placeTile(new Tile(rand.nextInt(Tile.NUM_TILES), rand.nextInt(4)), x, y);
+                } else if (rand.nextInt(4) == 0) {
+                    b.deleteTile(x, y);
+                }
+                // tokens at every starting position and where they end up are legal token positions
+                for (int side = 0; side < 48; side++) {
+                    int start = startingPosition(side);
+                    int end = b.traceMove(start);
+                    assertEquals(end, b.simulateMove(start), "Error: Port graph and trace differ");
+                    assertEquals(end, b.simulateMove(end), "Error: Token moved twice");
+                    checkSimulatedPlacement(rand, start);
+                    checkSimulatedPlacement(rand, end);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void makeUnmakeMoveTest() {
+        Random rand = new Random(7);
+        for (int game = 0; game < 50; game++) {
+            b = new Board();
+            int[] sides = new int[] {rand.nextInt(48), rand.nextInt(48), rand.nextInt(48)};
+            for (int color = 0; color < 3; color++) {
+                b.setPawn(color, startingPosition(sides[color]));
+            }
+            int[][] pawnsBefore = new int[Tile.NUM_TILES][3];
+            long[] hashBefore = new long[Tile.NUM_TILES];
+            int moves = 0;
+            for (int turn = 0; b.getPawnsOnBoard() > 0 && moves < Tile.NUM_TILES; turn = (turn + 1) % 3) {
+                if (!b.hasPawnOnBoard(turn)) {
+                    continue;
+                }
+                for (int color = 0; color < 3; color++) {
+                    pawnsBefore[moves][color] = b.getPawn(color);
+                }
+                hashBefore[moves] = b.getTileHash() ^ b.getPawnHash();
+                int code = rand.nextInt(Tile.NUM_TILES * 4);
+                int expected = b.simulateMove(b.getPawn(turn), code);
+                int eliminated = b.makeMove(turn, code);
+                moves++;
+                assertEquals(expected, b.getPawn(turn), "Error: Pawn did not move along the new tile");
+                assertEquals(Token.isOffBoard(expected), (eliminated & 1 << turn) != 0, "Error: Wrong elimination");
+            }
+            while (moves > 0) {
+                b.unmakeMove();
+                moves--;
+                for (int color = 0; color < 3; color++) {
+                    assertEquals(pawnsBefore[moves][color], b.getPawn(color), "Error: Pawn not restored");
+                }
+                assertEquals(hashBefore[moves], b.getTileHash() ^ b.getPawnHash(), "Error: Hash not restored");
+            }
+            assertEquals(0, b.getTileCount());
+            assertEquals(3, b.getPawnsOnBoard());
+        }
+    }
+
+    private static int startingPosition(int side) {
+        int i = side % 12 / 2;
+        int index = side % 2;
+        switch (side / 12) {
+            case 0: return Token.pack(i, -1, index + 4);
+            case 1: return Token.pack(6, i, index + 6);
+            case 2: return Token.pack(i, 6, index);
+            default: return Token.pack(-1, i, index + 2);
+        }
+    }
+
+    private static void checkSimulatedPlacement(Random rand, int packed) {
+        int x = Board.getAdjacentX(packed);
+        int y = Board.getAdjacentY(packed);
+        if (x < 0 || y < 0 || x > 5 || y > 5 || b.getTile(x, y) != null) {
+            return;
+        }
+        Tile tile = new Tile(rand.nextInt(Tile.NUM_TILES), rand.nextInt(4));
+        int end = b.simulateMove(packed, tile);
+        b.placeTile(tile, x, y);
+        assertEquals(b.traceMove(packed), end, "Error: Simulated placement and trace differ");
+        b.deleteTile(x, y);
+    }
+}
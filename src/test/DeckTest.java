@@ -3,6 +3,7 @@ import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -92,4 +93,53 @@ public class DeckTest {
         deck.addAndShuffle(pile);
         assertEquals(8, deck.size(), "Error: Add all to deck failed");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void containsTileTest() {
+        deck = new Deck();
+        Tile t = deck.get(3);
+        assertTrue(deck.containsTile(new Tile(3, 2)), "Error: Deck should contain tile 3");
+        while (deck.peek() != t) {
+            deck.pop();
+        }
+        deck.pop();
+        assertFalse(deck.containsTile(t), "Error: Deck should not contain a drawn tile");
+        List<Tile> hand = new ArrayList<>();
+        hand.add(t);
+        deck.addAndShuffle(hand);
+        assertTrue(deck.containsTile(t), "Error: Deck should contain a returned tile");
+        assertEquals(32, deck.size());
+    }
+
+    // A seeded deck is dealt shuffled, the same way for the same seed
+    @Test
+    public void seededDealTest() {
+        Deck deck1 = new Deck(new Random(7));
+        Deck deck2 = new Deck(new Random(7));
+        assertEquals(35, deck1.size());
+        boolean shuffled = false;
+        for (int i = 0; i < deck1.size(); i++) {
+            assertEquals(deck1.get(i).getId(), deck2.get(i).getId(), "Error: Seeded deals differ");
+            shuffled |= deck1.get(i).getId() != i;
+        }
+        assertTrue(shuffled, "Error: Seeded deck is not shuffled");
+    }
+
+    @Test
+    public void seededShuffleTest() {
+        Deck deck1 = new Deck(new Random(7));
+        Deck deck2 = new Deck(new Random(7));
+        List<Tile> drawn1 = new ArrayList<>();
+        List<Tile> drawn2 = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            drawn1.add(deck1.pop());
+            drawn2.add(deck2.pop());
+        }
+        deck1.addAndShuffle(drawn1);
+        deck2.addAndShuffle(drawn2);
+        assertEquals(35, deck1.size(), "Error: Tiles not returned to deck");
+        for (int i = 0; i < deck1.size(); i++) {
+            assertEquals(deck1.get(i).getId(), deck2.get(i).getId(), "Error: Seeded shuffles differ");
+        }
+    }
+}
@@ -14,7 +14,7 @@ public class DragonTest {
     static List<SPlayer> inSPlayer;
     static List<SPlayer> outSPlayer;
     static List<SPlayer> winners;
-    static Server server = Server.getInstance();
+    static Server server = new Server();
 
     // Moving where no player has the dragon tile before or after
     @Test
@@ -0,0 +1,268 @@
+package tsuro;
+import org.junit.jupiter.api.Test;
+import tsuro.admin.Admin;
+import tsuro.admin.AdminSocket;
+import tsuro.parser.BinaryParser;
+import java.io.EOFException;
+import java.nio.channels.ClosedChannelException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameHostTest {
+
+    // Remote client playing random tiles through Admin; returns the number of games ended
+    private static Callable<Integer> client(int port, String name) {
+        return client(port, name, null);
+    }
+
+    // The client offers a protocol of BinaryParser, or keeps to XML if null
+    private static Callable<Integer> client(int port, String name, String protocol) {
+        return () -> {
+            AtomicInteger gamesEnded = new AtomicInteger();
+            APlayer player = new MPlayerRandom(name) {
+                @Override
+                public void endGame(Board b, List<Integer> colors) {
+                    super.endGame(b, colors);
+                    gamesEnded.incrementAndGet();
+                }
+            };
+            Admin admin = new Admin(new AdminSocket("localhost", port), player);
+            admin.verbose = false;
+            admin.binary = protocol != null;
+            admin.delta = BinaryParser.DELTA_PROTOCOL.equals(protocol);
+            admin.run();
+            return gamesEnded.get();
+        };
+    }
+
+    private static void playTables(GameHost host, int tables, int playersPerTable) throws Exception {
+        playTables(host, tables, playersPerTable, null);
+    }
+
+    // Every other client offers a protocol of BinaryParser, unless null
+    private static void playTables(GameHost host, int tables, int playersPerTable, String protocol) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(tables * playersPerTable);
+        try {
+            host.start();
+            List<Future<Integer>> games = new ArrayList<>();
+            for (int i = 0; i < tables * playersPerTable; i++) {
+                games.add(clients.submit(client(host.getPort(), "P" + i, i % 2 == 0 ? protocol : null)));
+            }
+            int gamesEnded = 0;
+            for (Future<Integer> game : games) {
+                gamesEnded += game.get(60, TimeUnit.SECONDS);
+            }
+            assertEquals(tables * playersPerTable, gamesEnded, "Every client should see its game end");
+            assertEquals(tables, host.getTablesStarted());
+            for (int i = 0; i < 100 && host.getGamesPlayed() < tables; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(tables, host.getGamesPlayed());
+            assertEquals(0, host.getErrors());
+            Latencies latencies = host.getLatencies();
+            assertTrue(latencies.get(Latencies.ENCODE).getCount() > 0, "No message encoding recorded");
+            assertTrue(latencies.get(Latencies.DECODE).getCount() > 0, "No message decoding recorded");
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    // Clients are seated at tables of three as they connect and every table plays a full game
+    @Test
+    public void tablesTest() throws Exception {
+        try (GameHost host = new GameHost(0, 3, Executors.newFixedThreadPool(4))) {
+            playTables(host, 8, 3);
+        }
+    }
+
+    // Same over blocking sockets with a thread per table
+    @Test
+    public void threadPerTableTest() throws Exception {
+        try (GameHost host = GameHost.threadPerTable(0, 3)) {
+            playTables(host, 8, 3);
+        }
+    }
+
+    // Clients of the binary and the XML protocol play at the same tables
+    @Test
+    public void binaryTest() throws Exception {
+        try (GameHost host = new GameHost(0, 3, Executors.newFixedThreadPool(4))) {
+            playTables(host, 4, 3, BinaryParser.PROTOCOL);
+        }
+        try (GameHost host = GameHost.threadPerTable(0, 3)) {
+            playTables(host, 4, 3, BinaryParser.PROTOCOL);
+        }
+    }
+
+    // Clients of the delta protocol patch their own board through a whole game
+    @Test
+    public void deltaTest() throws Exception {
+        try (GameHost host = new GameHost(0, 3, Executors.newFixedThreadPool(4))) {
+            playTables(host, 4, 3, BinaryParser.DELTA_PROTOCOL);
+        }
+        try (GameHost host = GameHost.threadPerTable(0, 3)) {
+            playTables(host, 4, 3, BinaryParser.DELTA_PROTOCOL);
+        }
+    }
+
+    // Client that stops answering at a call of the server
+    private static Callable<Integer> hangingClient(int port, String call) {
+        return () -> {
+            APlayer player = new MPlayerRandom("H") {
+                @Override
+                public void initialize(int color, List<Integer> colors) {
+                    hangAt("initialize");
+                    super.initialize(color, colors);
+                }
+
+                @Override
+                public Tile playTurn(Board b, List<Tile> hand, int tilesLeft) throws Exception {
+                    hangAt("play-turn");
+                    return super.playTurn(b, hand, tilesLeft);
+                }
+
+                private void hangAt(String at) {
+                    if (at.equals(call)) {
+                        try {
+                            Thread.sleep(Long.MAX_VALUE);
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                }
+            };
+            Admin admin = new Admin(new AdminSocket("localhost", port), player);
+            admin.verbose = false;
+            admin.run();
+            return 0;
+        };
+    }
+
+    // A client missing the deadline is replaced by a machine player and the other client plays on
+    private static void missDeadline(GameHost host, String call) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            host.setDeadline(300);
+            host.start();
+            clients.submit(hangingClient(host.getPort(), call));
+            Future<Integer> game = clients.submit(client(host.getPort(), "P"));
+            assertEquals(1, (int) game.get(60, TimeUnit.SECONDS), "The other client should see its game end");
+            for (int i = 0; i < 100 && host.getGamesPlayed() == 0; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(1, host.getGamesPlayed());
+            assertEquals(0, host.getErrors());
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    public void deadlineTest() throws Exception {
+        for (String call : Arrays.asList("initialize", "play-turn")) {
+            try (GameHost host = new GameHost(0, 2, Executors.newFixedThreadPool(2))) {
+                missDeadline(host, call);
+            }
+            try (GameHost host = GameHost.threadPerTable(0, 2)) {
+                missDeadline(host, call);
+            }
+        }
+    }
+
+    // A client leaving during the game fails its table only
+    @Test
+    public void clientLeavesTest() throws Exception {
+        try (GameHost host = new GameHost(0, 2, Executors.newFixedThreadPool(2))) {
+            host.start();
+            AdminSocket leaving = new AdminSocket("localhost", host.getPort());
+            ExecutorService clients = Executors.newSingleThreadExecutor();
+            Future<Integer> staying = clients.submit(client(host.getPort(), "P"));
+            assertNotNull(leaving.readInputFromServer());
+            leaving.closeConnection();
+            staying.get(60, TimeUnit.SECONDS);
+            clients.shutdown();
+            for (int i = 0; i < 100 && host.getErrors() == 0; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(1, host.getErrors());
+            assertEquals(0, host.getGamesPlayed());
+        }
+    }
+
+    // Clients connected before start() are all seated, and closing disconnects a table left partly filled
+    @Test
+    public void connectedBeforeStartTest() throws Exception {
+        int tables = 3000;
+        StubListener listener = new StubListener(2 * tables + 1);
+        ExecutorService games = Executors.newSingleThreadExecutor();
+        GameHost host = new GameHost(listener, 2, games);
+        host.start();
+        assertEquals(tables, host.getTablesStarted());
+        StubConnection last = listener.handedOut.get(2 * tables);
+        assertFalse(last.closed);
+        host.close();
+        for (int i = 0; i < 100 && !last.closed; i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(last.closed, "The client seated at the unfilled table should be disconnected");
+        assertTrue(games.awaitTermination(60, TimeUnit.SECONDS));
+    }
+
+    // Hands out a number of connections at once, as if their clients had connected already
+    private static class StubListener implements PlayerListener {
+        private final List<StubConnection> handedOut = new ArrayList<>();
+        private final List<CompletableFuture<PlayerConnection>> waiting = new ArrayList<>();
+        private int connected;
+
+        StubListener(int connected) {
+            this.connected = connected;
+        }
+
+        public int getPort() {
+            return 0;
+        }
+
+        public synchronized CompletableFuture<PlayerConnection> accept() {
+            if (connected-- > 0) {
+                StubConnection connection = new StubConnection();
+                handedOut.add(connection);
+                return CompletableFuture.completedFuture(connection);
+            }
+            CompletableFuture<PlayerConnection> claim = new CompletableFuture<>();
+            waiting.add(claim);
+            return claim;
+        }
+
+        public synchronized void close() {
+            for (CompletableFuture<PlayerConnection> claim : waiting) {
+                claim.completeExceptionally(new ClosedChannelException());
+            }
+        }
+    }
+
+    // Connection of a client that has left; every request fails
+    private static class StubConnection implements PlayerConnection {
+        private volatile boolean closed;
+
+        public CompletableFuture<String> request(String message) {
+            CompletableFuture<String> answer = new CompletableFuture<>();
+            answer.completeExceptionally(new EOFException("Connection closed by client"));
+            return answer;
+        }
+
+        public CompletableFuture<byte[]> requestFrame(byte[] payload) {
+            CompletableFuture<byte[]> answer = new CompletableFuture<>();
+            answer.completeExceptionally(new EOFException("Connection closed by client"));
+            return answer;
+        }
+
+        public void setTimeout(long millis) {
+        }
+
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package tsuro;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameStateTest {
+
+    @Test
+    public void ofBoardTest() {
+        Board b = new Board();
+        b.placeTile(new Tile(4, 1), 2, 0);
+        Token token = new Token(3, new int[]{2, -1}, 5);
+        b.addSPlayer(new SPlayer(token, new ArrayList<>()));
+        GameState state = GameState.of(b);
+        assertEquals(4 * 4 + 1, state.getTileCode(2, 0));
+        assertEquals(-1, state.getTileCode(0, 0));
+        assertEquals(-1, state.getTileCode(6, 0));
+        assertEquals(token.pack(), state.getPawn(3));
+        assertEquals(-1, state.getPawn(0));
+        assertTrue(state.containsTile(4));
+        assertEquals(b.getTileHash() ^ Board.tokenKey(3, token.pack()), state.getHash());
+    }
+
+    // Play random games on a state and on a board with makeMove side by side
+    @Test
+    public void applyTest() {
+        Random rand = new Random(11);
+        for (int game = 0; game < 50; game++) {
+            Board b = new Board();
+            GameState state = GameState.EMPTY;
+            for (int color = 0; color < 3; color++) {
+                int packed = Token.pack(color * 2, -1, 4 + rand.nextInt(2));
+                b.setPawn(color, packed);
+                state = state.withPawn(color, packed);
+            }
+            List<GameState> history = new ArrayList<>();
+            List<Long> hashes = new ArrayList<>();
+            for (int turn = 0; b.getPawnsOnBoard() > 0 && !b.isFull(); turn = (turn + 1) % 3) {
+                if (!b.hasPawnOnBoard(turn)) {
+                    continue;
+                }
+                int code = rand.nextInt(Tile.NUM_TILES * 4);
+                history.add(state);
+                hashes.add(state.getHash());
+                b.makeMove(turn, code);
+                state = state.apply(turn, code);
+                for (int color = 0; color < 3; color++) {
+                    assertEquals(b.getPawn(color), state.getPawn(color), "Error: Pawns differ from board");
+                }
+                assertEquals(b.getTileHash() ^ b.getPawnHash(), state.getHash(), "Error: Hash differs from board");
+                assertEquals(b.getPawnsOnBoard(), state.getPawnsOnBoard());
+                assertEquals(b.getTileCount(), state.getTileCount());
+            }
+            // older states are not changed by later moves
+            for (int i = 0; i < history.size(); i++) {
+                assertEquals((long) hashes.get(i), history.get(i).getHash(), "Error: Old state changed");
+                assertEquals(i, history.get(i).getTileCount(), "Error: Old state changed");
+            }
+            Board copy = state.toBoard();
+            assertEquals(state.getHash(), copy.getTileHash() ^ copy.getPawnHash());
+        }
+    }
+
+    // Every state of a game holds each tile exactly once, on board, in a hand or in the pile,
+    // and hashes like the board of the server
+    @Test
+    public void serverStateTest() throws Exception {
+        Server server = new Server(new Deck(new Random(5)));
+        List<GameState> states = new ArrayList<>();
+        List<Long> boardHashes = new ArrayList<>();
+        server.setTurnListener(state -> {
+            states.add(state);
+            boardHashes.add(server.board.getHash());
+        });
+        List<APlayer> players = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            MPlayer player = new MPlayerRandom("P" + i);
+            player.setRandom(new Random(i));
+            players.add(player);
+        }
+        server.playGame(players);
+        assertEquals(server.turnCount, states.size());
+        for (int turn = 0; turn < states.size(); turn++) {
+            GameState state = states.get(turn);
+            assertEquals(turn + 1, state.getTileCount(), "Error: States changed after the turn");
+            assertEquals((long) boardHashes.get(turn), state.getHash(), "Error: Board hash differs from state");
+            long ids = 0;
+            int tiles = state.getTileCount() + state.getPileSize();
+            for (int color : state.getTurnOrder()) {
+                assertTrue(state.hasPawnOnBoard(color), "Error: Eliminated player in turn order");
+                assertTrue(state.getHandSize(color) <= 3);
+                tiles += state.getHandSize(color);
+                for (Tile t : state.getHand(color)) {
+                    ids |= 1L << t.getId();
+                }
+            }
+            for (Tile t : state.getPile()) {
+                ids |= 1L << t.getId();
+            }
+            for (int id = 0; id < Tile.NUM_TILES; id++) {
+                if (state.containsTile(id)) {
+                    assertEquals(0, ids & 1L << id, "Error: Tile " + id + " both on board and off it");
+                    ids |= 1L << id;
+                }
+            }
+            assertEquals(Tile.NUM_TILES, tiles, "Error: Tiles lost or duplicated at turn " + turn);
+            assertEquals((1L << Tile.NUM_TILES) - 1, ids);
+        }
+        GameState last = server.getState();
+        assertEquals(last.getHash(), states.get(states.size() - 1).getHash());
+    }
+
+    // Drawing shares the pile and leaves the old state as it was
+    @Test
+    public void drawTest() {
+        GameState state = GameState.EMPTY.withPile(4, 9, 20).withHand(1, 3).withTurnOrder(1, 2);
+        GameState drawn = state.draw(1).draw(2);
+        assertEquals(Arrays.asList(3, 4), ids(drawn.getHand(1)));
+        assertEquals(Collections.singletonList(9), ids(drawn.getHand(2)));
+        assertEquals(Collections.singletonList(20), ids(drawn.getPile()));
+        assertEquals(3, state.getPileSize());
+        assertEquals(Collections.singletonList(3), ids(state.getHand(1)));
+        assertEquals(1, drawn.getColorToPlay());
+        assertEquals(-1, drawn.getDragonHolder());
+        GameState full = GameState.EMPTY.withPile(1).withHand(0, 2, 3, 4);
+        assertThrows(IllegalArgumentException.class, () -> full.draw(0));
+        assertThrows(IllegalArgumentException.class, () -> GameState.EMPTY.draw(0));
+    }
+
+    private static List<Integer> ids(List<Tile> tiles) {
+        List<Integer> ids = new ArrayList<>();
+        for (Tile t : tiles) {
+            ids.add(t.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void applyThrowExceptionTest() {
+        assertThrows(IllegalArgumentException.class, () -> GameState.EMPTY.apply(0, 0));
+        GameState state = GameState.EMPTY.withTile(0, 0, 0);
+        assertThrows(IllegalArgumentException.class, () -> state.withTile(1, 0, 0));
+    }
+}
@@ -0,0 +1,82 @@
+package tsuro;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyTest() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getPercentile(50));
+        assertEquals(0, h.getMin());
+        assertEquals(0, h.getMax());
+    }
+
+    @Test
+    public void percentileTest() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i * 1000L);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(1000, h.getMin());
+        assertEquals(1000000, h.getMax());
+        assertEquals(500500.0, h.getMean(), 1e-6);
+        // every percentile is within 1/8 above the exact value
+        for (double p : new double[] {1, 50, 90, 99, 99.9}) {
+            long exact = (long) Math.ceil(p * 10) * 1000L;
+            long value = h.getPercentile(p);
+            assertTrue(value >= exact && value <= exact + exact / 8, "Percentile " + p + " is " + value);
+        }
+        assertEquals(1000000, h.getPercentile(100));
+    }
+
+    @Test
+    public void smallAndLargeValuesTest() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(-5);
+        h.record(3);
+        h.record(Long.MAX_VALUE);
+        assertEquals(0, h.getMin());
+        assertEquals(0, h.getPercentile(30));
+        assertEquals(3, h.getPercentile(60));
+        assertEquals(Long.MAX_VALUE, h.getPercentile(100));
+    }
+
+    @Test
+    public void addTest() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        LatencyHistogram both = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            a.record(i * 7);
+            both.record(i * 7);
+            b.record(100000 + i * 13);
+            both.record(100000 + i * 13);
+        }
+        a.add(b);
+        a.add(new LatencyHistogram());
+        assertEquals(both.getCount(), a.getCount());
+        assertEquals(both.getMin(), a.getMin());
+        assertEquals(both.getMax(), a.getMax());
+        for (double p : new double[] {10, 50, 75, 99}) {
+            assertEquals(both.getPercentile(p), a.getPercentile(p));
+        }
+    }
+
+    @Test
+    public void latenciesTest() {
+        Latencies game1 = new Latencies();
+        Latencies game2 = new Latencies();
+        game1.get(Latencies.LEGAL_PLAY).record(10);
+        game2.get(Latencies.LEGAL_PLAY).record(20);
+        game2.get(Latencies.DECODE);
+        Latencies all = new Latencies();
+        all.add(game1);
+        all.add(game2);
+        assertEquals(2, all.get(Latencies.LEGAL_PLAY).getCount());
+        // phases without any latency are left out
+        assertEquals(1, all.getPhases().size());
+    }
+}
@@ -12,7 +12,7 @@ public class MPlayerTest {
     static List<SPlayer> outSPlayer;
     static List<SPlayer> winners;
     static List<Integer> colors = new ArrayList<>();
-    static Server server = Server.getInstance();
+    static Server server = new Server();
 
     @Test
     public void placePawnTest(){
@@ -28,6 +28,26 @@ public class MPlayerTest {
         }
     }
 
+    // Players seeded alike make the same random choices
+    @Test
+    public void seededPlayerTest() throws Exception {
+        List<Integer> colors = Arrays.asList(0, 1);
+        Token[] tokens = new Token[2];
+        Tile[] tiles = new Tile[2];
+        for (int i = 0; i < 2; i++) {
+            MPlayer p = new MPlayerRandom("P");
+            p.setRandom(new Random(11));
+            p.initialize(0, colors);
+            Board b = new Board();
+            tokens[i] = p.placePawn(b);
+            b.addSPlayer(new SPlayer(tokens[i], null));
+            List<Tile> hand = Arrays.asList(new Tile(4, 0), new Tile(9, 0), new Tile(20, 0));
+            tiles[i] = p.playTurn(b, hand, 10);
+        }
+        assertTrue(tokens[0].isSameToken(tokens[1]), "Error: seeded players start at different positions");
+        assertEquals(tiles[0].getCode(), tiles[1].getCode(), "Error: seeded players play different tiles");
+    }
+
     @Test
     public void reorderPathTest(){
         //This tile has two different ways it might be placed
@@ -238,5 +258,64 @@ public class MPlayerTest {
         assertEquals(3, winners.get(0).getToken().getIndex(),"check SPlayer 1 token index");
     }
 
+    // Monte Carlo player picks one of its legal moves and can play a whole game
+    @Test
+    public void monteCarloStrategyTest() throws Exception {
+        b = new Board();
+        Tile tile0 = new Tile(new int[][] {{0, 7}, {1, 4}, {2, 6}, {3, 5}});
+        b.placeTile(tile0, 0, 0);
+        Token token = new Token(1, new int[] {0, 0}, 4);
+        Token other = new Token(2, new int[] {3, -1}, 5);
+        List<Tile> hand = new ArrayList<>();
+        hand.add(new Tile(new int[][] {{0, 1}, {2, 3}, {4, 5}, {6, 7}}));
+        hand.add(new Tile(new int[][] {{0, 4}, {1, 5}, {2, 7}, {3, 6}}));
+        hand.add(new Tile(new int[][] {{0, 5}, {1, 3}, {2, 6}, {4, 7}}));
+        SPlayer sp = new SPlayer(token, hand);
+        b.addSPlayer(sp);
+        b.addSPlayer(new SPlayer(other, new ArrayList<>()));
+
+        MPlayer mPlayer = new MPlayerMonteCarlo("", 5, 2, java.util.concurrent.ForkJoinPool.commonPool());
+        mPlayer.initialize(1, Arrays.asList(1, 2));
+        mPlayer.state = MPlayer.State.PLAY;
+        Tile t = mPlayer.playTurn(b, hand, 30);
+        assertTrue(server.legalPlay(sp, b, t), "Error: Picked an illegal tile to play");
+        assertEquals(1, b.getTileCount(), "Error: Playouts changed the board");
+
+        List<APlayer> players = new ArrayList<>();
+        players.add(new MPlayerMonteCarlo("MC", 1, 2, java.util.concurrent.ForkJoinPool.commonPool()));
+        players.add(new MPlayerRandom("R"));
+        Server game = new Server();
+        assertFalse(game.playGame(players).isEmpty(), "Error: Game has no winner");
+    }
+
+    // Expectimax player searches at least one turn ahead, picks one of its legal moves and can play a whole game
+    @Test
+    public void expectimaxStrategyTest() throws Exception {
+        b = new Board();
+        Tile tile0 = new Tile(new int[][] {{0, 7}, {1, 4}, {2, 6}, {3, 5}});
+        b.placeTile(tile0, 0, 0);
+        Token token = new Token(1, new int[] {0, 0}, 4);
+        Token other = new Token(2, new int[] {3, -1}, 5);
+        List<Tile> hand = new ArrayList<>();
+        hand.add(new Tile(new int[][] {{0, 1}, {2, 3}, {4, 5}, {6, 7}}));
+        hand.add(new Tile(new int[][] {{0, 4}, {1, 5}, {2, 7}, {3, 6}}));
+        hand.add(new Tile(new int[][] {{0, 5}, {1, 3}, {2, 6}, {4, 7}}));
+        SPlayer sp = new SPlayer(token, hand);
+        b.addSPlayer(sp);
+        b.addSPlayer(new SPlayer(other, new ArrayList<>()));
+
+        MPlayerExpectimax mPlayer = new MPlayerExpectimax("", 20, 1 << 12);
+        mPlayer.initialize(1, Arrays.asList(1, 2));
+        mPlayer.state = MPlayer.State.PLAY;
+        Tile t = mPlayer.playTurn(b, hand, 30);
+        assertTrue(server.legalPlay(sp, b, t), "Error: Picked an illegal tile to play");
+        assertTrue(mPlayer.getLastDepth() >= 1, "Error: No search completed");
+        assertEquals(1, b.getTileCount(), "Error: Search changed the board");
 
-}
\ No newline at end of file
+        List<APlayer> players = new ArrayList<>();
+        players.add(new MPlayerExpectimax("EX", 1, 1 << 12));
+        players.add(new MPlayerRandom("R"));
+        Server game = new Server();
+        assertFalse(game.playGame(players).isEmpty(), "Error: Game has no winner");
+    }
+}
@@ -0,0 +1,180 @@
+package tsuro;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PerftTest {
+
+    @Test
+    public void firstTurnTest() {
+        Board b = new Board();
+        Deck deck = new Deck();
+        List<SPlayer> players = new ArrayList<>();
+        List<Tile> hand = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            hand.add(deck.pop());
+        }
+        players.add(new SPlayer(new Token(0, new int[]{0, -1}, 4), hand));
+        players.add(new SPlayer(new Token(1, new int[]{6, 3}, 6), new ArrayList<>()));
+        Perft perft = new Perft(b, players, deck);
+        LegalMoves legalMoves = new LegalMoves().generate(b, players.get(0).getToken().pack(), hand);
+        int legal = 0;
+        for (int move = 0; move < legalMoves.size(); move++) {
+            if (legalMoves.isLegal(move)) {
+                legal++;
+            }
+        }
+        assertEquals(1, perft.count(0));
+        assertEquals(legal, perft.count(1));
+        // the second player has no tiles, so the game is over after the first turn
+        assertEquals(0, perft.count(2));
+    }
+
+    @Test
+    public void referenceTest() {
+        for (int numPlayers = 2; numPlayers <= 8; numPlayers += 3) {
+            Perft perft = Perft.startingPosition(numPlayers);
+            Reference reference = new Reference(numPlayers);
+            for (int depth = 1; depth <= 4; depth++) {
+                assertEquals(reference.count(depth), perft.count(depth));
+            }
+        }
+    }
+
+    // The rules of Perft are the rules of Server.legalPlay and Server.playATurn
+    @Test
+    public void serverTest() throws Exception {
+        for (int numPlayers = 2; numPlayers <= 8; numPlayers += 3) {
+            GameState start = Perft.startingState(numPlayers);
+            Perft perft = new Perft(start);
+            for (int depth = 1; depth <= 3; depth++) {
+                assertEquals(Perft.countThroughServer(start, depth), perft.count(depth));
+            }
+        }
+    }
+
+    // Same from positions in the middle of games of three, where moves eliminate players and return their
+    // hands, deep enough for a player to play a tile it has drawn
+    @Test
+    public void midGameServerTest() throws Exception {
+        int positions = 0;
+        for (int seed = 0; seed < 8; seed++) {
+            Server server = new Server(new Deck(new Random(seed)));
+            List<GameState> states = new ArrayList<>();
+            server.setTurnListener(states::add);
+            List<APlayer> players = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                MPlayer player = new MPlayerRandom("P" + i);
+                player.setRandom(new Random(seed * 10 + i));
+                players.add(player);
+            }
+            server.playGame(players);
+            for (int turn = 6; turn < states.size(); turn += 3) {
+                GameState state = states.get(turn);
+                // the draw pile has to last, as Perft has no dragon tile
+                if (state.getTurnOrder().length < 2 || state.getPileSize() < 8) {
+                    continue;
+                }
+                Perft perft = new Perft(state);
+                for (int depth = 1; depth <= 4; depth++) {
+                    assertEquals(Perft.countThroughServer(state, depth), perft.count(depth),
+                            "Seed " + seed + ", turn " + turn + ", depth " + depth);
+                }
+                positions++;
+            }
+        }
+        assertTrue(positions > 5, "Too few positions checked: " + positions);
+    }
+
+    @Test
+    public void parallelTest() {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        Perft perft = Perft.startingPosition(4);
+        for (int depth = 0; depth <= 4; depth++) {
+            assertEquals(perft.count(depth), perft.countParallel(depth, pool));
+        }
+        pool.shutdown();
+    }
+
+    // Same rules as Perft on immutable game states, copying hands and the draw pile at every turn
+    private static class Reference {
+        private final GameState start;
+        private final List<List<Integer>> hands = new ArrayList<>();
+        private final List<Integer> deck = new ArrayList<>();
+
+        Reference(int numPlayers) {
+            GameState state = GameState.EMPTY;
+            Deck d = new Deck();
+            for (int color = 0; color < numPlayers; color++) {
+                state = state.withPawn(color, Perft.startingPawn(color, numPlayers));
+                List<Integer> hand = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                    hand.add(d.pop().getId());
+                }
+                hands.add(hand);
+            }
+            while (d.size() > 0) {
+                deck.add(d.pop().getId());
+            }
+            this.start = state;
+        }
+
+        long count(int depth) {
+            return count(start, 0, hands, deck, depth);
+        }
+
+        private long count(GameState state, int turn, List<List<Integer>> hands, List<Integer> deck, int depth) {
+            if (depth == 0) {
+                return 1;
+            }
+            if (hands.get(turn).isEmpty() || state.getPawnsOnBoard() <= 1 || state.isFull()) {
+                return 0;
+            }
+            List<Integer> safe = new ArrayList<>();
+            List<Integer> eliminating = new ArrayList<>();
+            Set<Integer> seen = new HashSet<>();
+            for (int id : hands.get(turn)) {
+                for (int rotation = 0; rotation < 4; rotation++) {
+                    int code = id * 4 + rotation;
+                    if (!seen.add(Tile.getOrientation(code))) {
+                        continue;
+                    }
+                    GameState next = state.apply(turn, code);
+                    (next.hasPawnOnBoard(turn) ? safe : eliminating).add(code);
+                }
+            }
+            List<Integer> moves = safe.isEmpty() ? eliminating : safe;
+            long nodes = 0;
+            for (int code : moves) {
+                GameState next = state.apply(turn, code);
+                List<List<Integer>> nextHands = new ArrayList<>();
+                for (List<Integer> hand : hands) {
+                    nextHands.add(new ArrayList<>(hand));
+                }
+                List<Integer> nextDeck = new ArrayList<>(deck);
+                nextHands.get(turn).remove(Integer.valueOf(code / 4));
+                if (!nextDeck.isEmpty()) {
+                    nextHands.get(turn).add(nextDeck.remove(0));
+                }
+                for (int k = 0; k < hands.size(); k++) {
+                    int color = (turn + k) % hands.size();
+                    if (state.hasPawnOnBoard(color) && !next.hasPawnOnBoard(color)) {
+                        nextDeck.addAll(nextHands.get(color));
+                        nextHands.get(color).clear();
+                    }
+                }
+                if (depth == 1) {
+                    nodes++;
+                } else if (next.getPawnsOnBoard() > 1 && !next.isFull()) {
+                    int nextTurn = turn;
+                    do {
+                        nextTurn = (nextTurn + 1) % hands.size();
+                    } while (!next.hasPawnOnBoard(nextTurn));
+                    nodes += count(next, nextTurn, nextHands, nextDeck, depth - 1);
+                }
+            }
+            return nodes;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package tsuro;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SelectorServerTest {
+
+    // Client answering every line with the line reversed
+    private static Thread echoClient(int port) {
+        Thread client = new Thread(() -> {
+            try (Socket socket = new Socket("localhost", port)) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                String line;
+                while ((line = in.readLine()) != null) {
+                    out.println(new StringBuilder(line).reverse());
+                }
+            } catch (Exception e) {
+                // server has closed the connection
+            }
+        });
+        client.setDaemon(true);
+        client.start();
+        return client;
+    }
+
+    @Test
+    public void roundTripTest() throws Exception {
+        try (SelectorServer server = new SelectorServer(0)) {
+            echoClient(server.getPort());
+            PlayerConnection connection = server.accept().get(10, TimeUnit.SECONDS);
+            assertEquals("<bar>", connection.request(">rab<").get(10, TimeUnit.SECONDS));
+            // a message longer than the read buffer
+            char[] big = new char[100000];
+            Arrays.fill(big, 'x');
+            big[0] = 'y';
+            String answer = connection.request(new String(big)).get(10, TimeUnit.SECONDS);
+            assertEquals(big.length, answer.length());
+            assertEquals('y', answer.charAt(big.length - 1));
+            connection.close();
+        }
+    }
+
+    // Frames after a line, as after the handshake of the binary protocol
+    @Test
+    public void frameTest() throws Exception {
+        try (SelectorServer server = new SelectorServer(0)) {
+            Thread client = new Thread(() -> {
+                try (Socket socket = new Socket("localhost", server.getPort())) {
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    // the line "name"
+                    in.readFully(new byte[5]);
+                    out.write("binary\n".getBytes());
+                    for (int i = 0; i < 2; i++) {
+                        byte[] frame = new byte[in.readInt()];
+                        in.readFully(frame);
+                        out.writeInt(frame.length + 1);
+                        out.write(frame);
+                        out.write('!');
+                    }
+                } catch (Exception e) {
+                    // server has closed the connection
+                }
+            });
+            client.setDaemon(true);
+            client.start();
+            PlayerConnection connection = server.accept().get(10, TimeUnit.SECONDS);
+            assertEquals("binary", connection.request("name").get(10, TimeUnit.SECONDS));
+            assertArrayEquals(new byte[] {0, '\n', 2, '!'},
+                    connection.requestFrame(new byte[] {0, '\n', 2}).get(10, TimeUnit.SECONDS));
+            byte[] big = new byte[100000];
+            big[99999] = 7;
+            byte[] answer = connection.requestFrame(big).get(10, TimeUnit.SECONDS);
+            assertEquals(100001, answer.length);
+            assertEquals(7, answer[99999]);
+        }
+    }
+
+    // Only one message at a time may wait for its answer
+    @Test
+    public void oneRequestAtATimeTest() throws Exception {
+        try (SelectorServer server = new SelectorServer(0)) {
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                PlayerConnection connection = server.accept().get(10, TimeUnit.SECONDS);
+                CompletableFuture<String> first = connection.request("a");
+                CompletableFuture<String> second = connection.request("b");
+                ExecutionException e = assertThrows(ExecutionException.class, () -> second.get(10, TimeUnit.SECONDS));
+                assertTrue(e.getCause() instanceof IllegalStateException);
+                new PrintWriter(socket.getOutputStream(), true).println("answer");
+                assertEquals("answer", first.get(10, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    // Many clients served concurrently by the one event loop
+    @Test
+    public void manyConnectionsTest() throws Exception {
+        int n = 200;
+        try (SelectorServer server = new SelectorServer(0)) {
+            List<PlayerConnection> connections = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                echoClient(server.getPort());
+            }
+            for (int i = 0; i < n; i++) {
+                connections.add(server.accept().get(10, TimeUnit.SECONDS));
+            }
+            for (int round = 0; round < 5; round++) {
+                List<CompletableFuture<String>> answers = new ArrayList<>();
+                for (int i = 0; i < n; i++) {
+                    answers.add(connections.get(i).request("" + i + "-" + round));
+                }
+                for (int i = 0; i < n; i++) {
+                    String expected = new StringBuilder("" + i + "-" + round).reverse().toString();
+                    assertEquals(expected, answers.get(i).get(10, TimeUnit.SECONDS));
+                }
+            }
+        }
+    }
+
+    // A request not answered in time fails and drops the connection
+    @Test
+    public void timeoutTest() throws Exception {
+        try (SelectorServer server = new SelectorServer(0)) {
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                PlayerConnection connection = server.accept().get(10, TimeUnit.SECONDS);
+                connection.setTimeout(100);
+                ExecutionException e = assertThrows(ExecutionException.class,
+                        () -> connection.request("hello").get(10, TimeUnit.SECONDS));
+                assertTrue(e.getCause() instanceof TimeoutException);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                assertEquals("hello", in.readLine());
+                assertNull(in.readLine(), "The connection should be closed");
+            }
+        }
+    }
+
+    // The answer fails when the client goes away, and everything fails when the server closes
+    @Test
+    public void closedConnectionTest() throws Exception {
+        SelectorServer server = new SelectorServer(0);
+        Socket socket = new Socket("localhost", server.getPort());
+        PlayerConnection connection = server.accept().get(10, TimeUnit.SECONDS);
+        CompletableFuture<String> answer = connection.request("hello");
+        socket.close();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> answer.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof EOFException);
+
+        CompletableFuture<PlayerConnection> waiting = server.accept();
+        server.close();
+        assertThrows(ExecutionException.class, () -> waiting.get(10, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> server.accept().get(10, TimeUnit.SECONDS));
+    }
+
+    // Requests made after the server has closed fail rather than wait forever
+    @Test
+    public void requestAfterCloseTest() throws Exception {
+        SelectorServer server = new SelectorServer(0);
+        echoClient(server.getPort());
+        PlayerConnection connection = server.accept().get(10, TimeUnit.SECONDS);
+        server.close();
+        assertThrows(ExecutionException.class, () -> connection.request("hello").get(10, TimeUnit.SECONDS));
+        // once the event loop has stopped
+        Thread.sleep(200);
+        assertThrows(ExecutionException.class, () -> connection.request("hello").get(10, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class,
+                () -> connection.requestFrame(new byte[] {1}).get(10, TimeUnit.SECONDS));
+        connection.close();
+    }
+
+    // Answers of a remote player are parsed by the thread waiting for them, not by the event loop
+    @Test
+    public void decodeOnWaitingThreadTest() throws Exception {
+        try (SelectorServer server = new SelectorServer(0)) {
+            Thread client = new Thread(() -> {
+                try (Socket socket = new Socket("localhost", server.getPort())) {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                    PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                    // answer late, so that the answers arrive on the event loop while the server waits
+                    in.readLine();
+                    Thread.sleep(100);
+                    out.println("<player-name>Alice</player-name>");
+                    in.readLine();
+                    Thread.sleep(100);
+                    out.println("<void></void>");
+                    in.readLine();
+                } catch (Exception e) {
+                    // server has closed the connection
+                }
+            });
+            client.setDaemon(true);
+            client.start();
+            List<Thread> parsing = new CopyOnWriteArrayList<>();
+            DocumentBuilder db = new RecordingBuilder(DocumentBuilderFactory.newInstance().newDocumentBuilder(), parsing);
+            RemotePlayer player = new RemotePlayer(server.accept().get(10, TimeUnit.SECONDS), db);
+            player.verbose = false;
+            player.setDeadline(10000);
+
+            RemotePlayer.Answer<String> name = player.getNameAsync();
+            assertEquals("Alice", name.await());
+            player.initializeAsync(0, Arrays.asList(0, 1)).await();
+            assertEquals(Arrays.asList(Thread.currentThread(), Thread.currentThread()), parsing);
+        }
+    }
+
+    // Document builder recording the threads parsing with it
+    private static class RecordingBuilder extends DocumentBuilder {
+        private final DocumentBuilder db;
+        private final List<Thread> threads;
+
+        RecordingBuilder(DocumentBuilder db, List<Thread> threads) {
+            this.db = db;
+            this.threads = threads;
+        }
+
+        @Override
+        public Document parse(InputSource is) throws SAXException, IOException {
+            threads.add(Thread.currentThread());
+            return db.parse(is);
+        }
+
+        @Override
+        public boolean isNamespaceAware() {
+            return db.isNamespaceAware();
+        }
+
+        @Override
+        public boolean isValidating() {
+            return db.isValidating();
+        }
+
+        @Override
+        public void setEntityResolver(EntityResolver er) {
+            db.setEntityResolver(er);
+        }
+
+        @Override
+        public void setErrorHandler(ErrorHandler eh) {
+            db.setErrorHandler(eh);
+        }
+
+        @Override
+        public Document newDocument() {
+            return db.newDocument();
+        }
+
+        @Override
+        public DOMImplementation getDOMImplementation() {
+            return db.getDOMImplementation();
+        }
+    }
+}
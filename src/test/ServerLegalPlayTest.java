@@ -11,7 +11,7 @@ public class ServerLegalPlayTest {
     static Token token;
     static SPlayer p;
     static Tile tile;
-    static Server server = Server.getInstance();
+    static Server server = new Server();
 
     // Test 1: original position is legal, and token is simulated to cross one tile
     // Making a legal move where tile is placed in its original position
@@ -122,4 +122,29 @@ public class ServerLegalPlayTest {
         p.draw(tile2);
         assertEquals(false, server.legalPlay(p, b, tile), "legalPlay - Expect Illegal - Test 7");
     }
-}
\ No newline at end of file
+
+    // Test 8: moves generated for a hand match legalPlay of each tile and rotation
+    @Test
+    public void legalMovesTest() {
+        b = new Board();
+        token = new Token(0, new int[] {0,1}, 1);
+        Tile tile1 = new Tile(new int[][] {{0,7}, {1,4}, {2,5}, {3,6}});
+        b.placeTile(tile1, 0, 1);
+        tile = new Tile(new int[][] {{0,5}, {1,4}, {2,7}, {3,6}});
+        Tile tile2 = new Tile(new int[][] {{0,3}, {1,4}, {2,7}, {5,6}});
+        List<Tile> hand = new ArrayList<>();
+        p = new SPlayer(token, hand);
+        p.draw(tile);
+        p.draw(tile2);
+        LegalMoves moves = new LegalMoves().generate(b, token.pack(), hand);
+        assertEquals(1, tile.countSymmetricPaths());
+        assertEquals(5, moves.size(), "legalMoves - Expect one move per distinct rotation of each tile");
+        assertTrue(moves.getSafeCount() > 0, "legalMoves - Expect a safe move");
+        for (int i = 0; i < moves.size(); i++) {
+            Tile move = new Tile(moves.getCode(i) / 4, moves.getCode(i) % 4);
+            assertEquals(server.legalPlay(p, b, move), moves.isLegal(i), "legalMoves - Expect same result as legalPlay");
+            assertEquals(moves.isLegal(i), moves.isLegal(move), "legalMoves - Expect same result for tile and index");
+        }
+        assertEquals(moves.getSafeCount(), moves.getLegalTiles().size(), "legalMoves - Expect only safe moves to be legal");
+    }
+}
@@ -14,7 +14,7 @@ public class ServerPlayATurnTest {
     static List<SPlayer> inSPlayer;
     static List<SPlayer> outSPlayer;
     static List<SPlayer> winner;
-    static Server server = Server.getInstance();
+    static Server server = new Server();
 
     // Test 1: player 1 and player 2 move outside of board, both get eliminated, and game is over
     // Making a move that causes a token to cross multiple tiles
@@ -10,7 +10,7 @@ public class ServerTest {
     static List<SPlayer> outSPlayer;
     static List<SPlayer> winners;
     static List<Integer> colors = new ArrayList<>();
-    static Server server = Server.getInstance();
+    static Server server = new Server();
 
     // Run a tournament with three players
     // Player 1 uses Random strategy
@@ -131,7 +131,7 @@ public class ServerTest {
         winners = new ArrayList<>();
         deck = new Deck();
         colors = new ArrayList<>(Arrays.asList(0, 1));
-        Server server = Server.getInstance();
+        Server server = new Server();
         server.setState(board, inSPlayer, outSPlayer, winners, colors, deck);
 
         playerOne.initialize(0, colors);
@@ -178,4 +178,82 @@ public class ServerTest {
         assertTrue(currentP.getMPlayer() instanceof MPlayerRandom, "Player's cheating is not caught");
         assertEquals(true, server.isGameOver());
     }
+
+    // Turns played on a copy leave the game copied as it was
+    @Test
+    public void copyTest() throws Exception {
+        Server game = startGame(4);
+        List<Integer> gameColors = game.colors;
+        GameState before = game.getState();
+        int pileSize = game.drawPile.size();
+
+        Server copy = game.copy();
+        while (!copy.isGameOver()) {
+            playNext(copy);
+        }
+        GameState after = game.getState();
+        assertEquals(before.getHash(), after.getHash(), "Error: Copy shares the board");
+        assertEquals(pileSize, game.drawPile.size(), "Error: Copy shares the draw pile");
+        assertArrayEquals(before.getTurnOrder(), after.getTurnOrder(), "Error: Copy shares the players");
+        for (int color : gameColors) {
+            assertEquals(before.getHand(color).size(), after.getHand(color).size(), "Error: Copy shares the hands");
+        }
+
+        Server other = game.copy();
+        playNext(game);
+        playNext(other);
+        assertEquals(game.getState().getHash(), other.getState().getHash());
+        assertArrayEquals(game.getState().getTurnOrder(), other.getState().getTurnOrder());
+        assertEquals(game.drawPile.getPile(), other.drawPile.getPile());
+        assertEquals(game.turnCount, other.turnCount);
+    }
+
+    // Copies of games with the same seed play the same, and playing a copy changes nothing in the game
+    @Test
+    public void copySeedTest() throws Exception {
+        for (long seed = 0; seed < 10; seed++) {
+            Server game = startGame(seed);
+            Server same = startGame(seed);
+            Server copy = game.copy();
+            Server sameCopy = same.copy();
+            playToEnd(copy);
+            playToEnd(game);
+            playToEnd(same);
+            playToEnd(sameCopy);
+            assertEquals(same.turnCount, game.turnCount);
+            assertEquals(same.getState().getHash(), game.getState().getHash());
+            assertEquals(sameCopy.turnCount, copy.turnCount);
+            assertEquals(sameCopy.getState().getHash(), copy.getState().getHash());
+        }
+    }
+
+    // A game of four players five turns in, with a deck shuffled by a seed
+    private static Server startGame(long seed) throws Exception {
+        Server game = new Server(new Deck(new Random(seed)));
+        List<Integer> gameColors = Arrays.asList(0, 1, 2, 3);
+        game.colors = gameColors;
+        for (int color : gameColors) {
+            MPlayer player = new MPlayerLeastSym("Player " + color);
+            player.setRandom(new Random(seed * 8 + color));
+            player.initialize(color, gameColors);
+            game.registerPlayer(player, player.placePawn(game.board));
+        }
+        for (int turn = 0; turn < 5; turn++) {
+            playNext(game);
+        }
+        return game;
+    }
+
+    private static void playToEnd(Server game) throws Exception {
+        while (!game.isGameOver()) {
+            playNext(game);
+        }
+    }
+
+    private static void playNext(Server game) throws Exception {
+        SPlayer current = game.inSPlayers.get(0);
+        Tile tile = current.getPlayer().playTurn(game.board, current.getHand(), game.drawPile.size());
+        current.deal(tile);
+        game.playATurn(tile);
+    }
 }
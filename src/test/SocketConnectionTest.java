@@ -0,0 +1,89 @@
+package tsuro;
+import org.junit.jupiter.api.Test;
+import tsuro.parser.BinaryParser;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SocketConnectionTest {
+
+    private interface Answer {
+        void write(OutputStream out) throws Exception;
+    }
+
+    // Client reading one line, then answering it; the connection to it is returned
+    private static SocketConnection connect(ServerSocket listener, Answer answer) throws IOException {
+        Thread client = new Thread(() -> {
+            try (Socket socket = new Socket("localhost", listener.getLocalPort())) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                in.readLine();
+                answer.write(socket.getOutputStream());
+                in.readLine();
+            } catch (Exception e) {
+                // server has closed the connection
+            }
+        });
+        client.setDaemon(true);
+        client.start();
+        return new SocketConnection(listener.accept());
+    }
+
+    // The deadline bounds the whole answer, even when every byte arrives within it
+    @Test
+    public void slowAnswerTest() throws Exception {
+        try (ServerSocket listener = new ServerSocket(0)) {
+            SocketConnection connection = connect(listener, out -> {
+                for (byte b : "<void></void>\n".getBytes()) {
+                    out.write(b);
+                    out.flush();
+                    Thread.sleep(50);
+                }
+            });
+            connection.setTimeout(300);
+            long start = System.nanoTime();
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> connection.request("hello").get(10, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof TimeoutException);
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(600), "Deadline not kept");
+        }
+    }
+
+    // An answer in time after a slow one is fine, as every request has its own deadline
+    @Test
+    public void answerInTimeTest() throws Exception {
+        try (ServerSocket listener = new ServerSocket(0)) {
+            SocketConnection connection = connect(listener, out -> {
+                Thread.sleep(200);
+                out.write("<void></void>\n".getBytes());
+                out.flush();
+            });
+            connection.setTimeout(1000);
+            assertEquals("<void></void>", connection.request("hello").get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    // A line longer than a frame fails and drops the connection
+    @Test
+    public void longLineTest() throws Exception {
+        try (ServerSocket listener = new ServerSocket(0)) {
+            SocketConnection connection = connect(listener, out -> {
+                byte[] chunk = new byte[8192];
+                Arrays.fill(chunk, (byte) 'x');
+                for (int sent = 0; sent <= BinaryParser.MAX_FRAME; sent += chunk.length) {
+                    out.write(chunk);
+                }
+                out.flush();
+            });
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> connection.request("hello").get(10, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IOException);
+            assertTrue(e.getCause().getMessage().startsWith("Line longer"));
+        }
+    }
+}
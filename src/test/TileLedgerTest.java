@@ -0,0 +1,37 @@
+package tsuro;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TileLedgerTest {
+
+    @Test
+    public void rebuildTest() {
+        Board board = new Board();
+        Deck deck = new Deck();
+        TileLedger ledger = new TileLedger();
+        Tile onBoard = deck.pop();
+        board.placeTile(onBoard, 2, 3);
+        List<Tile> hand = new ArrayList<>(Arrays.asList(deck.pop(), deck.pop()));
+        SPlayer sp = new SPlayer(new Token(5, new int[]{0, -1}, 5), hand);
+        ledger.rebuild(board, deck, Collections.singletonList(sp));
+
+        assertTrue(TileLedger.isOnBoard(ledger.getLocation(onBoard)), "Error: Tile should be on board");
+        assertEquals(5, ledger.getLocation(hand.get(0)), "Error: Tile should be in hand of color 5");
+        assertEquals(TileLedger.DECK, ledger.getLocation(deck.peek()), "Error: Tile should be in deck");
+    }
+
+    @Test
+    public void updateTest() {
+        TileLedger ledger = new TileLedger();
+        Tile t = new Tile(7, 1);
+        assertEquals(TileLedger.NOWHERE, ledger.getLocation(t));
+        ledger.toHand(t, 3);
+        assertTrue(TileLedger.isInHand(ledger.getLocation(t)), "Error: Tile should be in hand");
+        ledger.toBoard(new Tile(7, 2), 0, 0);
+        assertTrue(TileLedger.isOnBoard(ledger.getLocation(t)), "Error: Rotated tile should be on board");
+        assertFalse(TileLedger.isInHand(ledger.getLocation(t)), "Error: Tile should not be in hand");
+        ledger.toDeck(t);
+        assertEquals(TileLedger.DECK, ledger.getLocation(t));
+    }
+}
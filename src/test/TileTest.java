@@ -69,4 +69,42 @@ public class TileTest {
         assertThrows(IllegalArgumentException.class, () -> t1.getPathEnd(Integer.MIN_VALUE));
         assertThrows(IllegalArgumentException.class, () -> t1.getPathEnd(Integer.MAX_VALUE));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void tileIdTest() {
+        Deck deck = new Deck();
+        for (int i = 0; i < deck.size(); i++) {
+            assertEquals(i, deck.get(i).getId(), "Error: Deck tile has unexpected id");
+            assertEquals(0, deck.get(i).getRotation(), "Error: Deck tile is rotated");
+        }
+        Tile t1 = new Tile(new int[][]{{0, 1}, {2, 4}, {3, 6}, {5, 7}});
+        Tile t2 = new Tile(new int[][]{{0, 6}, {1, 3}, {2, 7}, {4, 5}});
+        assertEquals(t1.getId(), t2.getId(), "Error: Rotated tile has a different id");
+        assertEquals(2, t2.getRotation(), "Error: Rotation not recognized from paths");
+    }
+
+    @Test
+    public void isSamePathsTest() {
+        Tile t1 = new Tile(new int[][]{{0, 4}, {1, 5}, {2, 7}, {3, 6}});
+        Tile t2 = t1.copyTile();
+        t2.rotateTile();
+        assertFalse(t1.isSamePaths(t2), "Error: Rotated tile has same paths");
+        t2.rotateTile();
+        assertTrue(t1.isSamePaths(t2), "Error: Half symmetric tile rotated twice has different paths");
+        assertTrue(t1.isSameTile(t2), "Error: Rotated tile is not the same tile");
+    }
+
+    @Test
+    public void distinctRotationsTest() {
+        for (int id = 0; id < Tile.NUM_TILES; id++) {
+            Tile tile = new Tile(id, 0);
+            int distinct = Tile.getDistinctRotations(id);
+            assertEquals(distinct, tile.countSymmetricPaths());
+            Tile rotated = tile.copyTile();
+            for (int i = 0; i < distinct; i++) {
+                rotated.rotateTile();
+            }
+            assertTrue(tile.isSamePaths(rotated), "Error: Rotating by the number of distinct rotations changed the paths");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package tsuro;
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TournamentTest {
+
+    // Play a game without network through Server.playGame
+    @Test
+    public void playGameTest() throws Exception {
+        Server server = new Server();
+        List<APlayer> players = new ArrayList<>();
+        players.add(new MPlayerRandom("R"));
+        players.add(new MPlayerMostSym("MS"));
+        players.add(new MPlayerLeastSym("LS"));
+        List<SPlayer> winners = server.playGame(players);
+        assertTrue(server.isGameOver(), "Game is not over");
+        assertFalse(winners.isEmpty(), "Game has no winner");
+        assertTrue(server.turnCount > 0, "No turn is counted");
+        assertEquals(server.turnCount, server.latencies.get(Latencies.LEGAL_PLAY).getCount());
+        assertEquals(server.turnCount, server.latencies.get(Latencies.BOARD_UPDATE).getCount());
+        long turns = 0;
+        List<String> names = Arrays.asList("R", "MS", "LS");
+        for (int color = 0; color < names.size(); color++) {
+            turns += server.latencies.get(Latencies.playTurn(color, names.get(color))).getCount();
+        }
+        assertEquals(server.turnCount, turns);
+    }
+
+    // Players of the same name have a playTurn histogram each
+    @Test
+    public void sameNameTest() throws Exception {
+        Server server = new Server();
+        List<APlayer> players = new ArrayList<>();
+        players.add(new MPlayerRandom("Player"));
+        players.add(new MPlayerRandom("Player"));
+        server.playGame(players);
+        long first = server.latencies.get(Latencies.playTurn(0, "Player")).getCount();
+        long second = server.latencies.get(Latencies.playTurn(1, "Player")).getCount();
+        assertTrue(first > 0 && second > 0, "Error: Players share a histogram");
+        assertEquals(server.turnCount, first + second);
+        assertEquals("Player", Latencies.playerOf(Latencies.playTurn(1, "Player")));
+    }
+
+    // The same seed plays the same games, whatever the number of threads
+    @Test
+    public void seededTournamentTest() throws Exception {
+        Tournament first = new Tournament(Arrays.asList("R", "MS", "LS"), 20, 1, 7);
+        first.run();
+        Tournament second = new Tournament(Arrays.asList("R", "MS", "LS"), 20, 4, 7);
+        second.run();
+        for (String strategy : Arrays.asList("R", "MS", "LS")) {
+            assertEquals(first.getWins(strategy), second.getWins(strategy), "Wins of " + strategy + " differ");
+        }
+        assertEquals(first.getTurnsPlayed(), second.getTurnsPlayed());
+    }
+
+    // Every turn of every game is told to the listener with the seed of its game
+    @Test
+    public void turnListenerTest() throws Exception {
+        Tournament tournament = new Tournament(Arrays.asList("R", "MS"), 6, 3, 100);
+        Map<Long, List<GameState>> games = new ConcurrentHashMap<>();
+        tournament.setTurnListener((seed, state) ->
+                games.computeIfAbsent(seed, s -> Collections.synchronizedList(new ArrayList<>())).add(state));
+        tournament.run();
+        assertEquals(new HashSet<>(Arrays.asList(100L, 101L, 102L, 103L, 104L, 105L)), games.keySet());
+        long turns = 0;
+        for (List<GameState> states : games.values()) {
+            for (int i = 0; i < states.size(); i++) {
+                assertEquals(i + 1, states.get(i).getTileCount(), "Error: Turns out of order");
+            }
+            turns += states.size();
+        }
+        assertEquals(tournament.getTurnsPlayed(), turns);
+    }
+
+    // Play games between all strategies on several threads
+    @Test
+    public void parallelTournamentTest() throws Exception {
+        Tournament tournament = new Tournament(Arrays.asList("R", "MS", "LS", "R"), 40, 4, 42);
+        tournament.run();
+        assertEquals(40, tournament.getGamesPlayed());
+        assertEquals(0, tournament.getErrors());
+        assertEquals(80, tournament.getAppearances("R"));
+        assertEquals(40, tournament.getAppearances("MS"));
+        long totalWins = tournament.getWins("R") + tournament.getWins("MS") + tournament.getWins("LS");
+        assertTrue(totalWins >= 40, "Every game should have at least one winner");
+        Latencies latencies = tournament.getLatencies();
+        assertEquals(tournament.getTurnsPlayed(), latencies.get(Latencies.CHECK_HAND).getCount());
+        assertTrue(latencies.getPhases().contains(Latencies.PLAY_TURN + "MS"), "No playTurn latency by strategy");
+        assertFalse(latencies.getPhases().contains(Latencies.ENCODE), "Local games encode no message");
+    }
+
+    @Test
+    public void unknownStrategyTest() {
+        assertThrows(IllegalArgumentException.class, () -> new Tournament(Arrays.asList("R", "X"), 1, 1, 0));
+    }
+}